@@ -2,19 +2,58 @@ package com.n2d4.rachel.learning;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.indexing.BooleanIndexing;
-import org.nd4j.linalg.indexing.conditions.Conditions;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
+import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.vectorization.LayerOutputSet;
 import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
 import com.n2d4.rachel.vectorization.VectorizedData;
 import com.n2d4.rachel.vectorization.derivatives.ActivationDerivative;
+import com.n2d4.rachel.vectorization.derivatives.Erroneousness;
+import com.n2d4.rachel.vectorization.derivatives.LayerCostDerivative;
 
 public interface ActivationFunction {
 	public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput);
+	
+	/**
+	 * Only asked for if this function {@link #isElementwise() is element-wise}; learners reject other functions on construction wherever they would need it.
+	 */
 	public ActivationDerivative getDerivative(UnactivatedLayerOutputSet layerSetOutput, LayerOutputSet actualOutput);
 	
+	/**
+	 * Applies the function and writes its derivative into the given buffer, which must have the input's shape. Used during training so the derivative does not have to be recomputed during backpropagation. Functions with a {@link #hasUnitDerivative() unit derivative} leave the buffer untouched.
+	 */
+	public default LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput, INDArray derivativeBuffer) {
+		LayerOutputSet result = apply(layerSetOutput);
+		if (derivativeBuffer != null && !hasUnitDerivative()) derivativeBuffer.assign(VectorizedData.getINDArray(getDerivative(layerSetOutput, result)));
+		return result;
+	}
+	
+	/**
+	 * Returns whether the derivative is 1 everywhere, in which case chaining with it can be skipped.
+	 */
+	public default boolean hasUnitDerivative() {
+		return false;
+	}
+	
+	/**
+	 * Returns whether every output only depends on the input at the same position. Only element-wise functions have a {@link #getDerivative(UnactivatedLayerOutputSet, LayerOutputSet) derivative} of the input's shape; others can only be used in output layers, where they are chained with {@link #chain(LayerCostDerivative, ActivationDerivative, VectorizedData)}.
+	 */
+	public default boolean isElementwise() {
+		return true;
+	}
+	
+	/**
+	 * Turns the derivative of the cost with respect to this function's output into the derivative with respect to its input.
+	 * 
+	 * @param derivative this function's derivative, or null if it is not {@link #isElementwise() element-wise} or has a {@link #hasUnitDerivative() unit derivative}
+	 * @param actualOutput this function's output
+	 */
+	public default Erroneousness chain(LayerCostDerivative costDerivative, ActivationDerivative derivative, VectorizedData actualOutput) {
+		if (hasUnitDerivative()) return new Erroneousness(VectorizedData.getINDArray(costDerivative));
+		return costDerivative.chain(derivative);
+	}
+	
 	
 	
 	
@@ -29,6 +68,10 @@ public interface ActivationFunction {
 			// TODO Requirements
 			return new ActivationDerivative(Nd4j.ones(VectorizedData.getINDArray(layerSetOutput).shape()));
 		}
+		
+		@Override public boolean hasUnitDerivative() {
+			return true;
+		}
 	};
 	
 	
@@ -36,16 +79,11 @@ public interface ActivationFunction {
 	
 	
 	
-	public static final ActivationFunction SIGMOID = new ActivationFunction() {
-		@Override public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput) {
-			// TODO Requirements
-			return new LayerOutputSet(Transforms.sigmoid(VectorizedData.getINDArray(layerSetOutput)));
-		}
-		
-		@Override public ActivationDerivative getDerivative(UnactivatedLayerOutputSet layerSetOutput, LayerOutputSet actualOutput) {
-			// TODO Requirements
-			INDArray out = VectorizedData.getINDArray(actualOutput);
-			return new ActivationDerivative(out.mul(out.rsub(1)));
+	public static final ActivationFunction SIGMOID = new ElementwiseActivationFunction() {
+		@Override protected double compute(double x, double[] derivative) {
+			double y = 1 / (1 + Math.exp(-x));
+			if (derivative != null) derivative[0] = y * (1 - y);
+			return y;
 		}
 	};
 	
@@ -54,35 +92,61 @@ public interface ActivationFunction {
 	
 	
 	
-	public static final ActivationFunction RELU = new ActivationFunction() {
-		@Override public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput) {
-			// TODO Requirements
-			return new LayerOutputSet(Transforms.max(VectorizedData.getINDArray(layerSetOutput), 0));
+	public static final ActivationFunction RELU = new ElementwiseActivationFunction() {
+		@Override protected double compute(double x, double[] derivative) {
+			if (derivative != null) derivative[0] = x > 0 ? 1 : 0;
+			return x > 0 ? x : 0;
 		}
-		
-		@Override public ActivationDerivative getDerivative(UnactivatedLayerOutputSet layerSetOutput, LayerOutputSet actualOutput) {
-			// TODO Requirements
-			INDArray out = VectorizedData.getINDArray(actualOutput);
-			return new ActivationDerivative(Transforms.sign(out));
+	};
+	
+	
+	
+	
+	/**
+	 * The softplus function, log(1 + e^x). Computed as max(x, 0) + log(1 + e^-|x|), which neither overflows nor loses precision for large |x|; its derivative, the sigmoid, reuses the same exponential.
+	 */
+	public static final ActivationFunction ANALYTIC = new ElementwiseActivationFunction() {
+		@Override protected double compute(double x, double[] derivative) {
+			double e = Math.exp(-Math.abs(x));
+			if (derivative != null) derivative[0] = x >= 0 ? 1 / (1 + e) : e / (1 + e);
+			return Math.max(x, 0) + Math.log1p(e);
 		}
 	};
 	
 	
 	
 	
-	public static final ActivationFunction ANALYTIC = new ActivationFunction() {
+	/**
+	 * The softmax function, which turns every set's outputs into a probability distribution. Computed as e^(x - logsumexp(x)), where the log-sum-exp subtracts the set's maximum before exponentiating, so it neither overflows nor divides by zero. The log-probabilities x - logsumexp(x) are kept as the output's {@link LayerOutputSet#getLogValues() log values}.
+	 * <p>
+	 * Softmax is not {@link #isElementwise() element-wise} and can therefore only be used in output layers. Paired with {@link CostFunction#CATEGORICAL_CROSS_ENTROPY}, its Jacobian cancels out completely.
+	 */
+	public static final ActivationFunction SOFTMAX = new ActivationFunction() {
 		@Override public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput) {
-			// TODO Requirements
-			INDArray out = VectorizedData.getINDArray(layerSetOutput);
-			INDArray n = Transforms.exp(out).add(1);
-			BooleanIndexing.replaceWhere(n, out, Conditions.isInfinite());
-			return new LayerOutputSet(Transforms.log(n));
+			INDArray in = VectorizedData.getINDArray(Requirements.nonNull(layerSetOutput, "layer output"));
+			INDArray shifted = in.dup().subiColumnVector(in.max(1));
+			INDArray logSumExp = Transforms.log(Transforms.exp(shifted).sum(1), false);
+			INDArray logProbabilities = shifted.subiColumnVector(logSumExp);
+			return new LayerOutputSet(Transforms.exp(logProbabilities, true), logProbabilities);
+		}
+		
+		@Override public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput, INDArray derivativeBuffer) {
+			return apply(layerSetOutput);
 		}
 		
 		@Override public ActivationDerivative getDerivative(UnactivatedLayerOutputSet layerSetOutput, LayerOutputSet actualOutput) {
-			// TODO Requirements
-			INDArray out = VectorizedData.getINDArray(actualOutput);
-			return new ActivationDerivative(Transforms.sigmoid(out));
+			throw new IllegalStateException("Softmax has no element-wise derivative");
+		}
+		
+		@Override public boolean isElementwise() {
+			return false;
+		}
+		
+		@Override public Erroneousness chain(LayerCostDerivative costDerivative, ActivationDerivative derivative, VectorizedData actualOutput) {
+			// Jacobian-vector product: y * (g - sum(g * y)) per set
+			INDArray g = VectorizedData.getINDArray(costDerivative);
+			INDArray y = VectorizedData.getINDArray(actualOutput);
+			return new Erroneousness(g.dup().subiColumnVector(g.mul(y).sum(1)).muli(y));
 		}
 	};
 }
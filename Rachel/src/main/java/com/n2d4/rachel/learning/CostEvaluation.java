@@ -0,0 +1,44 @@
+package com.n2d4.rachel.learning;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.CostSet;
+import com.n2d4.rachel.vectorization.derivatives.OutputCostDerivative;
+
+/**
+ * A cost together with its derivative with respect to the actual output, as returned by {@link CostFunction#getCostAndOutputDerivative(com.n2d4.rachel.vectorization.UnrolledBiasLackingParameters, com.n2d4.rachel.vectorization.OutputSet, com.n2d4.rachel.vectorization.OutputSet) CostFunction.getCostAndOutputDerivative(...)}.
+ */
+public final class CostEvaluation implements Debuggable {
+	
+	private final CostSet cost;
+	private final OutputCostDerivative outputDerivative;
+	
+	public CostEvaluation(CostSet cost, OutputCostDerivative outputDerivative) {
+		this.cost = Requirements.nonNull(cost, "cost");
+		this.outputDerivative = Requirements.nonNull(outputDerivative, "output derivative");
+	}
+	
+	
+	public CostSet getCost() {
+		return cost;
+	}
+	
+	public OutputCostDerivative getOutputDerivative() {
+		return outputDerivative;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getCost()", getCost()).add("getOutputDerivative()", getOutputDerivative());
+		return builder;
+	}
+	
+}
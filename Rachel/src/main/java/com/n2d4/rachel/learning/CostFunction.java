@@ -1,8 +1,5 @@
 package com.n2d4.rachel.learning;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.ops.transforms.Transforms;
-
 import com.n2d4.rachel.util.math.Nd4jUtils;
 import com.n2d4.rachel.vectorization.CostSet;
 import com.n2d4.rachel.vectorization.LayerInputError;
@@ -13,19 +10,37 @@ import com.n2d4.rachel.vectorization.OutputSet;
 import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
 import com.n2d4.rachel.vectorization.UnrolledBiasLackingParameters;
 import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.ActivationDerivative;
 import com.n2d4.rachel.vectorization.derivatives.Erroneousness;
 import com.n2d4.rachel.vectorization.derivatives.LayerCostDerivative;
 import com.n2d4.rachel.vectorization.derivatives.OutputCostDerivative;
 import com.n2d4.rachel.vectorization.derivatives.ParameterError;
 
 public interface CostFunction {
+	/**
+	 * Returns whether this cost function reads the weight decay parameters passed to its methods. If not, learners pass null instead of unrolling a copy of their weights on every call.
+	 */
+	public default boolean needsWeightDecayParameters() {
+		return false;
+	}
+	
 	public CostSet getCost(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput);
 	public OutputCostDerivative getOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput);
 	
 	public default Erroneousness getErroneousness(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput, UnactivatedLayerOutputSet unactivatedLayerOutput, LayerOutputSet actualLayerOutput, ActivationFunction activationFunction) {
+		ActivationDerivative activationDerivative = activationFunction.isElementwise() && needsActivationDerivative(actualOutput, activationFunction) ? activationFunction.getDerivative(unactivatedLayerOutput, actualLayerOutput) : null;
+		return getErroneousness(weightDecayParameters, expectedOutput, actualOutput, activationFunction, activationDerivative);
+	}
+	
+	/**
+	 * Same as {@link #getErroneousness(UnrolledBiasLackingParameters, OutputSet, OutputSet, UnactivatedLayerOutputSet, LayerOutputSet, ActivationFunction)}, but with an activation derivative that was already computed during the forward pass. The derivative may be null if {@link #needsActivationDerivative(OutputSet, ActivationFunction)} returns false.
+	 */
+	public default Erroneousness getErroneousness(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput, ActivationFunction activationFunction, ActivationDerivative activationDerivative) {
 		// Optimize some common combinations of cost and activation functions
 		if (this == CostFunction.LOGARITHMIC && actualOutput.hasIgnorableDerivative() && activationFunction == ActivationFunction.SIGMOID)	// extremely common in logistic regression and sometimes in neural networks; divisor of cost function and activation function reduce each other
-			return new Erroneousness(VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput)).mul(1d/expectedOutput.getSetCount()));
+			return new Erroneousness(VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput)).muli(1d/expectedOutput.getSetCount()));
+		if (this == CostFunction.CATEGORICAL_CROSS_ENTROPY && actualOutput.hasIgnorableDerivative() && activationFunction == ActivationFunction.SOFTMAX)	// the softmax Jacobian cancels out with the cross-entropy's derivative, leaving (actual - expected) / m
+			return new Erroneousness(VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput)).muli(1d/expectedOutput.getSetCount()));
 		
 		
 		OutputCostDerivative oderiv = getOutputDerivative(weightDecayParameters, expectedOutput, actualOutput);
@@ -35,10 +50,23 @@ public interface CostFunction {
 		else
 			lderiv = oderiv.chain(actualOutput.getLayerOutputSetDerivative());
 		
-		if (activationFunction == ActivationFunction.LINEAR) // linear activation function's derivative matrix consists out of only ones, so we can simply skip that step instead
-			return new Erroneousness(VectorizedData.getINDArray(lderiv));
-		
-		return lderiv.chain(activationFunction.getDerivative(unactivatedLayerOutput, actualLayerOutput));
+		return activationFunction.chain(lderiv, activationDerivative, actualOutput);
+	}
+	
+	/**
+	 * Returns whether {@link #getErroneousness(UnrolledBiasLackingParameters, OutputSet, OutputSet, ActivationFunction, ActivationDerivative)} uses the activation derivative for the given output and activation function.
+	 */
+	public default boolean needsActivationDerivative(OutputSet actualOutput, ActivationFunction activationFunction) {
+		if (activationFunction.hasUnitDerivative() || !activationFunction.isElementwise()) return false;
+		return !(this == CostFunction.LOGARITHMIC && actualOutput.hasIgnorableDerivative() && activationFunction == ActivationFunction.SIGMOID);
+	}
+	
+	
+	/**
+	 * Computes both the cost and its derivative with respect to the actual output. Implementations may do so in a single pass.
+	 */
+	public default CostEvaluation getCostAndOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
+		return new CostEvaluation(getCost(weightDecayParameters, expectedOutput, actualOutput), getOutputDerivative(weightDecayParameters, expectedOutput, actualOutput));
 	}
 	
 	
@@ -54,62 +82,62 @@ public interface CostFunction {
 	
 	
 	
-	public static final CostFunction HALF_SQUARED = new CostFunction() {
-		@Override public CostSet getCost(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
-			// TODO Requirements
-			INDArray dif = VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput));
-			INDArray J = Transforms.pow(dif, 2).sum(0).mul(1/(2d * dif.rows()));
-			return new CostSet(J);
+	public static final CostFunction HALF_SQUARED = new ElementwiseCostFunction() {
+		@Override protected double cost(double expected, double actual, double expectedMix, double actualMix) {
+			double dif = (actual - expected) * expectedMix * actualMix;
+			return dif * dif / 2;
 		}
 		
-		@Override public OutputCostDerivative getOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
-			// TODO Requirements
-			INDArray dif = VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput));
-			INDArray grad = dif.mul(1d/expectedOutput.getSetCount());
-			return new OutputCostDerivative(grad);
+		@Override protected double derivative(double expected, double actual, double expectedMix, double actualMix) {
+			return (actual - expected) * expectedMix * actualMix;
 		}
 	};
 	
 	
 	
 	
-	public static final CostFunction LINEAR = new CostFunction() {
-		@Override public CostSet getCost(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
-			// TODO Requirements
-			INDArray dif = VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput));
-			INDArray J = Transforms.abs(dif).sum(0).mul(1d/dif.rows());
-			return new CostSet(J);
+	public static final CostFunction LINEAR = new ElementwiseCostFunction() {
+		@Override protected double cost(double expected, double actual, double expectedMix, double actualMix) {
+			return Math.abs((actual - expected) * expectedMix * actualMix);
 		}
 		
-		@Override public OutputCostDerivative getOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
-			// TODO Requirements
-			INDArray dif = VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput));
-			INDArray grad = Transforms.sign(dif).mul(1d/expectedOutput.getSetCount());
-			return new OutputCostDerivative(grad);
+		@Override protected double derivative(double expected, double actual, double expectedMix, double actualMix) {
+			return Math.signum((actual - expected) * expectedMix * actualMix);
 		}
 	};
 	
 	
 	
 
-	public static final CostFunction LOGARITHMIC = new CostFunction() {
-		@Override public CostSet getCost(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
-			// TODO Requirements
-			INDArray expected = VectorizedData.getINDArray(expectedOutput.getMixer().mix(actualOutput));
-			INDArray actual = VectorizedData.getINDArray(actualOutput);
-			INDArray J = expected.mul(Nd4jUtils.zLog(actual)).add(expected.rsub(1).mul(Nd4jUtils.zLog(actual.rsub(1)))).sum(0).mul(-1d/actual.rows());
-			return new CostSet(J);
+	public static final CostFunction LOGARITHMIC = new ElementwiseCostFunction() {
+		@Override protected double cost(double expected, double actual, double expectedMix, double actualMix) {
+			double mixed = expectedMix * expected + (1 - expectedMix) * actual;
+			return -(mixed * Nd4jUtils.zLog(actual) + (1 - mixed) * Nd4jUtils.zLog(1 - actual));
+		}
+		
+		@Override protected double derivative(double expected, double actual, double expectedMix, double actualMix) {
+			return (actual - expected) * expectedMix * actualMix / Math.max(actual * (1 - actual), Double.MIN_NORMAL);
+		}
+	};
+	
+	
+	
+	
+	/**
+	 * The cross-entropy of the expected and actual class probabilities. Meant for one-hot outputs activated by {@link ActivationFunction#SOFTMAX}, with which it is fused during backpropagation, and whose log-probabilities it uses so saturated outputs still have their exact cost.
+	 */
+	public static final CostFunction CATEGORICAL_CROSS_ENTROPY = new ElementwiseCostFunction() {
+		@Override protected double cost(double expected, double actual, double expectedMix, double actualMix) {
+			return -expected * expectedMix * actualMix * Math.log(Math.max(actual, Double.MIN_VALUE));
 		}
 		
-		@Override public OutputCostDerivative getOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
-			// TODO Requirements
-			INDArray dif = VectorizedData.getINDArray(expectedOutput.getDifference(actualOutput));
-			INDArray actual = VectorizedData.getINDArray(actualOutput);
-			INDArray bel = Transforms.max(actual.mul(actual.rsub(1)), Double.MIN_NORMAL);
-			INDArray grad = dif.div(bel).mul(1d/expectedOutput.getSetCount());
-			return new OutputCostDerivative(grad);
+		@Override protected double logCost(double expected, double logActual, double expectedMix, double actualMix) {
+			return -expected * expectedMix * actualMix * logActual;
 		}
 		
+		@Override protected double derivative(double expected, double actual, double expectedMix, double actualMix) {
+			return -expected * expectedMix * actualMix / Math.max(actual, Double.MIN_NORMAL);
+		}
 	};
 	
 	
@@ -0,0 +1,107 @@
+package com.n2d4.rachel.learning;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.CostSet;
+
+/**
+ * Decides how often {@link SupervisedLearner#train(int, int, EarlyStoppingPolicy, ValidationListener) SupervisedLearner.train(...)} computes the validation cost, and for how many validations without improvement it keeps going.
+ */
+public class EarlyStoppingPolicy implements Debuggable {
+	
+	public static final int DEFAULT_VALIDATE_EVERY = 1000;
+	public static final int DEFAULT_PATIENCE = 10;
+	
+	private final int validateEvery;
+	private final int patience;
+	private final double minImprovement;
+	private final boolean background;
+	private final boolean restoreBest;
+	private final CostFunction costFunction;
+	
+	public EarlyStoppingPolicy() {
+		this(DEFAULT_VALIDATE_EVERY, DEFAULT_PATIENCE);
+	}
+	
+	public EarlyStoppingPolicy(int validateEvery, int patience) {
+		this(validateEvery, patience, false);
+	}
+	
+	public EarlyStoppingPolicy(int validateEvery, int patience, boolean background) {
+		this(validateEvery, patience, 0, background, true, null);
+	}
+	
+	/**
+	 * @param validateEvery the amount of training iterations between two validations
+	 * @param patience the amount of validations without improvement that are tolerated before stopping
+	 * @param minImprovement the amount by which the validation cost must decrease to count as an improvement
+	 * @param background whether to compute the validation cost on a separate thread against a snapshot of the state
+	 * @param restoreBest whether to restore the state with the lowest validation cost once training stops
+	 * @param costFunction the cost function to validate with, or null for the learner's own
+	 */
+	public EarlyStoppingPolicy(int validateEvery, int patience, double minImprovement, boolean background, boolean restoreBest, CostFunction costFunction) {
+		this.validateEvery = Requirements.positive(validateEvery, "validate every");
+		this.patience = Requirements.nonNegative(patience, "patience");
+		Requirements.throwErrorIf(minImprovement < 0, Requirements.FormatStrings.mustNotBe, "minimum improvement", "negative");
+		this.minImprovement = minImprovement;
+		this.background = background;
+		this.restoreBest = restoreBest;
+		this.costFunction = costFunction;
+	}
+	
+	
+	public int getValidateEvery() {
+		return validateEvery;
+	}
+	
+	public int getPatience() {
+		return patience;
+	}
+	
+	public double getMinImprovement() {
+		return minImprovement;
+	}
+	
+	public boolean isBackground() {
+		return background;
+	}
+	
+	public boolean isRestoringBest() {
+		return restoreBest;
+	}
+	
+	public CostFunction getCostFunction() {
+		return costFunction;
+	}
+	
+	
+	static Thread newValidationThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "Validation");
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getValidateEvery()", getValidateEvery()).add("getPatience()", getPatience())
+				.add("getMinImprovement()", getMinImprovement()).add("isBackground()", isBackground())
+				.add("isRestoringBest()", isRestoringBest()).add("getCostFunction()", getCostFunction());
+		return builder;
+	}
+	
+	
+	
+	
+	public static interface ValidationListener {
+		public void onValidation(int iteration, CostSet validationError, boolean improved);
+	}
+	
+}
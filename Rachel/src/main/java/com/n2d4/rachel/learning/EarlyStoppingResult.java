@@ -0,0 +1,52 @@
+package com.n2d4.rachel.learning;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.vectorization.CostSet;
+
+public final class EarlyStoppingResult implements Debuggable {
+	
+	private final int iterations;
+	private final int bestIteration;
+	private final CostSet bestValidationError;
+	private final boolean stoppedEarly;
+	
+	EarlyStoppingResult(int iterations, int bestIteration, CostSet bestValidationError, boolean stoppedEarly) {
+		this.iterations = iterations;
+		this.bestIteration = bestIteration;
+		this.bestValidationError = bestValidationError;
+		this.stoppedEarly = stoppedEarly;
+	}
+	
+	
+	public int getIterations() {
+		return iterations;
+	}
+	
+	public int getBestIteration() {
+		return bestIteration;
+	}
+	
+	public CostSet getBestValidationError() {
+		return bestValidationError;
+	}
+	
+	public boolean hasStoppedEarly() {
+		return stoppedEarly;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getIterations()", getIterations()).add("getBestIteration()", getBestIteration())
+				.add("getBestValidationError()", getBestValidationError()).add("hasStoppedEarly()", hasStoppedEarly());
+		return builder;
+	}
+	
+}
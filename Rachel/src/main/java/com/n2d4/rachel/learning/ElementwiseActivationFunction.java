@@ -0,0 +1,60 @@
+package com.n2d4.rachel.learning;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.math.Nd4jUtils;
+import com.n2d4.rachel.vectorization.LayerOutputSet;
+import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.ActivationDerivative;
+
+/**
+ * An activation function that is applied to every element on its own. Value and derivative are computed by a single scalar kernel, so during training both are produced in one pass over the input.
+ */
+public abstract class ElementwiseActivationFunction implements ActivationFunction {
+	
+	/**
+	 * Computes the function's value at {@code x}. If {@code derivative} is not null, the derivative at {@code x} is stored in {@code derivative[0]}.
+	 */
+	protected abstract double compute(double x, double[] derivative);
+	
+	
+	@Override
+	public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput) {
+		return apply(layerSetOutput, null);
+	}
+	
+	@Override
+	public LayerOutputSet apply(UnactivatedLayerOutputSet layerSetOutput, INDArray derivativeBuffer) {
+		INDArray out = VectorizedData.getINDArray(Requirements.nonNull(layerSetOutput, "layer output")).dup();
+		if (derivativeBuffer != null) Requirements.equal(derivativeBuffer.length(), out.length(), "derivative buffer length");
+		
+		double[] derivative = derivativeBuffer == null ? null : new double[1];
+		int length = out.length();
+		if (Nd4jUtils.isDense(out) && (derivativeBuffer == null || (Nd4jUtils.isDense(derivativeBuffer) && derivativeBuffer.ordering() == out.ordering()))) {
+			DataBuffer values = out.data();
+			DataBuffer derivatives = derivativeBuffer == null ? null : derivativeBuffer.data();
+			for (int i = 0; i < length; i++) {
+				values.put(i, compute(values.getDouble(i), derivative));
+				if (derivative != null) derivatives.put(i, derivative[0]);
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				out.putScalar(i, compute(out.getDouble(i), derivative));
+				if (derivative != null) derivativeBuffer.putScalar(i, derivative[0]);
+			}
+		}
+		return new LayerOutputSet(out);
+	}
+	
+	@Override
+	public ActivationDerivative getDerivative(UnactivatedLayerOutputSet layerSetOutput, LayerOutputSet actualOutput) {
+		INDArray result = Nd4j.create(VectorizedData.getINDArray(layerSetOutput).shape());
+		apply(layerSetOutput, result);
+		return new ActivationDerivative(result);
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.n2d4.rachel.learning;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.CostSet;
+import com.n2d4.rachel.vectorization.OutputMask;
+import com.n2d4.rachel.vectorization.OutputSet;
+import com.n2d4.rachel.vectorization.UnrolledBiasLackingParameters;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.OutputCostDerivative;
+
+/**
+ * A cost function that is the mean over all sets of a per-element cost, computed in a single pass over the outputs.
+ */
+public abstract class ElementwiseCostFunction implements CostFunction {
+	
+	/**
+	 * Returns the cost of a single element, before averaging over the sets.
+	 * 
+	 * @param expectedMix 1 if the element is active in the expected output's mask or it has none, 0 otherwise
+	 * @param actualMix 1 if the element is active in the actual output's mask or it has none, 0 otherwise
+	 */
+	protected abstract double cost(double expected, double actual, double expectedMix, double actualMix);
+	
+	/**
+	 * Returns the derivative of {@link #cost(double, double, double, double)} with respect to {@code actual}.
+	 */
+	protected abstract double derivative(double expected, double actual, double expectedMix, double actualMix);
+	
+	/**
+	 * Returns the same as {@link #cost(double, double, double, double)}, given the logarithm of the actual value. Used if the actual output {@link OutputSet#getLogValues() knows its logarithms}; cost functions that take the logarithm of the actual value override it to avoid the loss of precision.
+	 */
+	protected double logCost(double expected, double logActual, double expectedMix, double actualMix) {
+		return cost(expected, Math.exp(logActual), expectedMix, actualMix);
+	}
+	
+	
+	@Override
+	public CostSet getCost(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
+		return new CostSet(evaluate(expectedOutput, actualOutput, true, false)[0]);
+	}
+	
+	@Override
+	public OutputCostDerivative getOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
+		return new OutputCostDerivative(evaluate(expectedOutput, actualOutput, false, true)[1]);
+	}
+	
+	@Override
+	public CostEvaluation getCostAndOutputDerivative(UnrolledBiasLackingParameters weightDecayParameters, OutputSet expectedOutput, OutputSet actualOutput) {
+		INDArray[] result = evaluate(expectedOutput, actualOutput, true, true);
+		return new CostEvaluation(new CostSet(result[0]), new OutputCostDerivative(result[1]));
+	}
+	
+	
+	private INDArray[] evaluate(OutputSet expectedOutput, OutputSet actualOutput, boolean withCost, boolean withDerivative) {
+		Requirements.nonNull(expectedOutput, "expected output");
+		Requirements.nonNull(actualOutput, "actual output");
+		Requirements.equal(actualOutput.getSetCount(), expectedOutput.getSetCount(), "actual output set count");
+		Requirements.equal(actualOutput.getOutputCount(), expectedOutput.getOutputCount(), "actual output count");
+		
+		INDArray expected = VectorizedData.getINDArray(expectedOutput);
+		INDArray actual = VectorizedData.getINDArray(actualOutput);
+		INDArray logActual = withCost ? actualOutput.getLogValues() : null;
+		OutputMask expectedMask = expectedOutput.hasMask() ? expectedOutput.getMask() : null;
+		OutputMask actualMask = actualOutput.hasMask() ? actualOutput.getMask() : null;
+		
+		int rows = expected.rows();
+		int columns = expected.columns();
+		double scale = 1d / rows;
+		double[] costs = withCost ? new double[columns] : null;
+		INDArray derivatives = withDerivative ? Nd4j.create(rows, columns) : null;
+		
+		if (isRowMajor(expected) && isRowMajor(actual) && isRowMajor(logActual) && isRowMajor(derivatives)) {
+			DataBuffer e = expected.data();
+			DataBuffer a = actual.data();
+			DataBuffer l = logActual == null ? null : logActual.data();
+			DataBuffer d = derivatives == null ? null : derivatives.data();
+			int index = 0;
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++, index++) {
+					double ev = e.getDouble(index);
+					double av = a.getDouble(index);
+					double emv = expectedMask == null || expectedMask.isActive(i, j) ? 1 : 0;
+					double amv = actualMask == null || actualMask.isActive(i, j) ? 1 : 0;
+					if (costs != null) costs[j] += l == null ? cost(ev, av, emv, amv) : logCost(ev, l.getDouble(index), emv, amv);
+					if (d != null) d.put(index, derivative(ev, av, emv, amv) * scale);
+				}
+			}
+		} else {
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++) {
+					double ev = expected.getDouble(i, j);
+					double av = actual.getDouble(i, j);
+					double emv = expectedMask == null || expectedMask.isActive(i, j) ? 1 : 0;
+					double amv = actualMask == null || actualMask.isActive(i, j) ? 1 : 0;
+					if (costs != null) costs[j] += logActual == null ? cost(ev, av, emv, amv) : logCost(ev, logActual.getDouble(i, j), emv, amv);
+					if (derivatives != null) derivatives.putScalar(i, j, derivative(ev, av, emv, amv) * scale);
+				}
+			}
+		}
+		
+		INDArray cost = null;
+		if (costs != null) {
+			for (int j = 0; j < columns; j++) {
+				costs[j] *= scale;
+			}
+			cost = Nd4j.create(costs);
+		}
+		return new INDArray[] {cost, derivatives};
+	}
+	
+	private static boolean isRowMajor(INDArray arr) {
+		return arr == null || (!arr.isView() && arr.offset() == 0 && arr.ordering() == 'c' && arr.data().length() == arr.length());
+	}
+
+}
@@ -15,10 +15,17 @@ public abstract class ExperimentState implements Serializable {
 	}
 	
 	protected ExperimentState(ExperimentState from) {
+		this(from, true);
+	}
+	
+	/**
+	 * @param withOptimizationData whether to clone the optimization data too; states that are only used to process inputs do not need it
+	 */
+	protected ExperimentState(ExperimentState from, boolean withOptimizationData) {
 		Requirements.nonNull(from, "state to clone");
 		
 		iterations = from.getIterationCount();
-		optimizationData = from.getOptimizationData();
+		optimizationData = withOptimizationData ? from.getOptimizationData() : null;
 		if (optimizationData != null) optimizationData = optimizationData.clone();
 	}
 	
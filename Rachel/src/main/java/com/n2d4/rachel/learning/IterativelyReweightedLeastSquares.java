@@ -0,0 +1,84 @@
+package com.n2d4.rachel.learning;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.math.CholeskyDecomposition;
+import com.n2d4.rachel.vectorization.UnrolledParameters;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
+
+/**
+ * Newton's method with the damped, exact Hessian of the {@link Objective} and a {@link LineSearch backtracking line search}.
+ */
+public class IterativelyReweightedLeastSquares implements OptimizationFunction, Debuggable {
+	
+	public static final double DEFAULT_DAMPING = 1e-8;
+	
+	private final double damping;
+	
+	public IterativelyReweightedLeastSquares() {
+		this(DEFAULT_DAMPING);
+	}
+	
+	public IterativelyReweightedLeastSquares(double damping) {
+		Requirements.throwErrorIf(!(damping >= 0), Requirements.FormatStrings.mustNotBe, "damping", "negative");
+		
+		this.damping = damping;
+	}
+	
+	
+	public double getDamping() {
+		return damping;
+	}
+	
+	@Override
+	public boolean needsObjective() {
+		return true;
+	}
+	
+	@Override
+	public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative, Objective objective) {
+		Requirements.nonNull(parameters, "parameters");
+		Requirements.nonNull(costDerivative, "cost derivative");
+		Requirements.nonNull(objective, "objective");
+		Requirements.equal(costDerivative.getDataLength(), parameters.getDataLength(), "derivative data length");
+		
+		INDArray hessian = objective.getHessian(parameters);
+		if (hessian == null) throw new UnsupportedOperationException("IRLS needs an objective that knows its Hessian, such as the one of a regression");
+		Requirements.equal(hessian.rows(), parameters.getDataLength(), "Hessian size");
+		
+		INDArray gradient = VectorizedData.getINDArray(costDerivative);
+		INDArray damped = hessian.dup();
+		for (int i = 0; i < damped.rows(); i++) {
+			damped.putScalar(i, i, damped.getDouble(i, i) + damping);
+		}
+		
+		INDArray direction;
+		try {
+			direction = new CholeskyDecomposition(damped).solve(gradient).negi();
+		} catch (IllegalStateException e) {
+			direction = gradient.neg();
+		}
+		
+		LineSearch.search(objective, parameters, gradient, direction, 1);
+		return data;
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getDamping()", getDamping());
+		return builder;
+	}
+
+}
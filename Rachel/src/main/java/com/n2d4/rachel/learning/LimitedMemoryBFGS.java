@@ -0,0 +1,158 @@
+package com.n2d4.rachel.learning;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.UnrolledParameters;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
+
+/**
+ * The L-BFGS quasi-Newton method, with a {@link LineSearch backtracking line search}. Should be trained on the full training set rather than on random batches.
+ */
+public class LimitedMemoryBFGS implements OptimizationFunction, Debuggable {
+	
+	public static final int DEFAULT_MEMORY = 10;
+	
+	private final int memory;
+	
+	public LimitedMemoryBFGS() {
+		this(DEFAULT_MEMORY);
+	}
+	
+	public LimitedMemoryBFGS(int memory) {
+		this.memory = Requirements.positive(memory, "memory");
+	}
+	
+	
+	public int getMemory() {
+		return memory;
+	}
+	
+	@Override
+	public boolean needsObjective() {
+		return true;
+	}
+	
+	@Override
+	public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative, Objective objective) {
+		Requirements.nonNull(parameters, "parameters");
+		Requirements.nonNull(costDerivative, "cost derivative");
+		Requirements.nonNull(objective, "objective");
+		Requirements.equal(costDerivative.getDataLength(), parameters.getDataLength(), "derivative data length");
+		
+		History history = data instanceof History ? (History) data : new History();
+		INDArray gradient = VectorizedData.getINDArray(costDerivative);
+		
+		if (history.lastStep != null) {
+			INDArray change = gradient.sub(history.lastGradient);
+			if (LineSearch.dot(change, history.lastStep) > 1e-10) {
+				history.steps.addLast(history.lastStep);
+				history.changes.addLast(change);
+				if (history.steps.size() > memory) {
+					history.steps.removeFirst();
+					history.changes.removeFirst();
+				}
+			}
+		}
+		
+		INDArray direction = getDirection(history, gradient);
+		if (LineSearch.dot(direction, gradient) >= 0) {
+			history.clear();
+			direction = gradient.neg();
+		}
+		
+		double initialStep = history.steps.isEmpty() ? Math.min(1, 1 / gradient.norm2Number().doubleValue()) : 1;
+		double step = LineSearch.search(objective, parameters, gradient, direction, initialStep);
+		if (step == 0) {
+			history.clear();
+			return history;
+		}
+		
+		history.lastStep = direction.muli(step);
+		history.lastGradient = gradient.dup();
+		return history;
+	}
+	
+	/**
+	 * Multiplies the negative gradient with the approximate inverse Hessian by the two-loop recursion.
+	 */
+	private static INDArray getDirection(History history, INDArray gradient) {
+		INDArray q = gradient.neg();
+		int size = history.steps.size();
+		if (size == 0) return q;
+		
+		double[] alphas = new double[size];
+		double[] rhos = new double[size];
+		Iterator<INDArray> steps = history.steps.descendingIterator();
+		Iterator<INDArray> changes = history.changes.descendingIterator();
+		for (int i = size - 1; i >= 0; i--) {
+			INDArray s = steps.next();
+			INDArray y = changes.next();
+			rhos[i] = 1 / LineSearch.dot(y, s);
+			alphas[i] = rhos[i] * LineSearch.dot(s, q);
+			q.subi(y.mul(alphas[i]));
+		}
+		
+		INDArray lastStep = history.steps.getLast();
+		INDArray lastChange = history.changes.getLast();
+		q.muli(LineSearch.dot(lastStep, lastChange) / LineSearch.dot(lastChange, lastChange));
+		
+		steps = history.steps.iterator();
+		changes = history.changes.iterator();
+		for (int i = 0; i < size; i++) {
+			INDArray s = steps.next();
+			INDArray y = changes.next();
+			double beta = rhos[i] * LineSearch.dot(y, q);
+			q.addi(s.mul(alphas[i] - beta));
+		}
+		return q;
+	}
+	
+	
+	
+	private static class History extends OptimizationFunctionData {
+		private final Deque<INDArray> steps = new ArrayDeque<INDArray>();
+		private final Deque<INDArray> changes = new ArrayDeque<INDArray>();
+		private INDArray lastStep;
+		private INDArray lastGradient;
+		
+		private void clear() {
+			steps.clear();
+			changes.clear();
+			lastStep = null;
+			lastGradient = null;
+		}
+		
+		@Override
+		public History clone() {
+			History result = new History();
+			for (INDArray s : steps) result.steps.addLast(s.dup());
+			for (INDArray y : changes) result.changes.addLast(y.dup());
+			result.lastStep = lastStep == null ? null : lastStep.dup();
+			result.lastGradient = lastGradient == null ? null : lastGradient.dup();
+			return result;
+		}
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getMemory()", getMemory());
+		return builder;
+	}
+	
+}
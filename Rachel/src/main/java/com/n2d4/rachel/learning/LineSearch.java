@@ -0,0 +1,51 @@
+package com.n2d4.rachel.learning;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.util.Exceptions;
+import com.n2d4.rachel.vectorization.UnrolledParameters;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * Backtracking line search on the Armijo condition, shared by the second-order optimization functions.
+ */
+final class LineSearch {
+	
+	public static final double SUFFICIENT_DECREASE = 1e-4;
+	public static final double BACKTRACKING_FACTOR = 0.5;
+	public static final int MAX_BACKTRACKS = 30;
+	
+	private LineSearch() {
+		Exceptions.privateConstructor();
+	}
+	
+	/**
+	 * Moves the parameters along the given direction, halving the step size until the cost has decreased sufficiently. If no step size does, the parameters are left where they were.
+	 * 
+	 * @param gradient the derivative of the cost at the current parameters
+	 * @param initialStep the step size tried first
+	 * @return the step size taken, or 0 if no step was taken
+	 */
+	public static double search(Objective objective, UnrolledParameters parameters, INDArray gradient, INDArray direction, double initialStep) {
+		INDArray values = VectorizedData.getINDArray(parameters);
+		INDArray start = values.dup();
+		double startCost = objective.getCost(parameters);
+		double slope = dot(gradient, direction);
+		
+		double step = initialStep;
+		for (int i = 0; i < MAX_BACKTRACKS; i++) {
+			values.assign(start).addi(direction.mul(step));
+			double cost = objective.getCost(parameters);
+			if (cost <= startCost + SUFFICIENT_DECREASE * step * slope) return step;
+			step *= BACKTRACKING_FACTOR;
+		}
+		
+		values.assign(start);
+		return 0;
+	}
+	
+	public static double dot(INDArray a, INDArray b) {
+		return a.mul(b).sumNumber().doubleValue();
+	}
+	
+}
@@ -0,0 +1,24 @@
+package com.n2d4.rachel.learning;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.vectorization.UnrolledParameters;
+
+/**
+ * The cost of a learner on the set it is currently trained on, as a function of its parameters. Given to optimization functions that need more than the derivative at the current point, such as a line search.
+ */
+public interface Objective {
+	
+	/**
+	 * Writes the given parameters into the learner's weights and returns the total cost at that point.
+	 */
+	public double getCost(UnrolledParameters parameters);
+	
+	/**
+	 * Writes the given parameters into the learner's weights and returns the Hessian of the total cost at that point, as a square matrix in the order of the unrolled parameters. Returns null if the learner does not know its Hessian.
+	 */
+	public default INDArray getHessian(UnrolledParameters parameters) {
+		return null;
+	}
+	
+}
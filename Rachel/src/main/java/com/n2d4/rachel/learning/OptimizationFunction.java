@@ -5,14 +5,24 @@ import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
 
 public interface OptimizationFunction {
 	
-	public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative);
+	/**
+	 * @param objective the cost as a function of the parameters, through which it may also be evaluated at other points; null if the cost cannot be evaluated here, which is only allowed if this function does not {@link #needsObjective() need one}
+	 */
+	public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative, Objective objective);
+	
+	/**
+	 * Returns whether this function can only step with an {@link Objective}. Such functions cannot step on derivatives that were computed elsewhere; learners that do so reject them when they are configured.
+	 */
+	public default boolean needsObjective() {
+		return false;
+	}
 	
 	
 	
 	
 	public static OptimizationFunction GRADIENT_DESCENT(double learningRate) {
 		return new OptimizationFunction() {
-			@Override public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative) {
+			@Override public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative, Objective objective) {
 				// TODO Requirements
 				parameters.updateFrom(costDerivative, learningRate);
 				return null;
@@ -20,4 +30,37 @@ public interface OptimizationFunction {
 		};
 	}
 	
+	/**
+	 * @see LimitedMemoryBFGS
+	 */
+	public static OptimizationFunction LBFGS() {
+		return new LimitedMemoryBFGS();
+	}
+	
+	/**
+	 * @see LimitedMemoryBFGS
+	 */
+	public static OptimizationFunction LBFGS(int memory) {
+		return new LimitedMemoryBFGS(memory);
+	}
+	
+	/**
+	 * @see IterativelyReweightedLeastSquares
+	 */
+	public static OptimizationFunction IRLS() {
+		return new IterativelyReweightedLeastSquares();
+	}
+	
+	/**
+	 * Gradient descent with L2 and L1 weight decay on every weight except the biases. The decay is applied in the same pass as the update; see {@link UnrolledParameters#updateFrom(UnrolledParameterErrors, double, double, double)}.
+	 */
+	public static OptimizationFunction GRADIENT_DESCENT(double learningRate, double l2, double l1) {
+		return new OptimizationFunction() {
+			@Override public OptimizationFunctionData step(OptimizationFunctionData data, UnrolledParameters parameters, UnrolledParameterErrors costDerivative, Objective objective) {
+				parameters.updateFrom(costDerivative, learningRate, l2, l1);
+				return null;
+			}
+		};
+	}
+	
 }
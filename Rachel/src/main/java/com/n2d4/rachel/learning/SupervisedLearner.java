@@ -1,31 +1,66 @@
 package com.n2d4.rachel.learning;
 
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.learning.EarlyStoppingPolicy.ValidationListener;
 import com.n2d4.rachel.util.DebugStringBuilder;
 import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.util.Util;
 import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
 import com.n2d4.rachel.vectorization.CostSet;
 import com.n2d4.rachel.vectorization.DataSet;
 import com.n2d4.rachel.vectorization.InputSet;
 import com.n2d4.rachel.vectorization.OutputSet;
 import com.n2d4.rachel.vectorization.SupervisedInOutSet;
 import com.n2d4.rachel.vectorization.TrainingSet;
+import com.n2d4.rachel.vectorization.UnrolledParameters;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
 
 public abstract class SupervisedLearner<StateType extends ExperimentState> implements Debuggable {
 	
+	public static final int DEFAULT_EVALUATION_CHUNK_SIZE = 8192;
+	
 	private final CostFunction costFunction;
 	private final ActivationFunction activationFunction;
 	private final OptimizationFunction optimizationFunction;
 	private final WeightApplyFunction weightApplyFunction;
+	private final MetricsRegistry metrics = new MetricsRegistry(false);
 	private StateType experimentState;
+	private final AtomicReference<StateType> publishedState = new AtomicReference<StateType>();
+	private volatile int publishingInterval = 0;
 	private long seed;
 	private DataSet dataSet;
+	private volatile int evaluationChunkSize = DEFAULT_EVALUATION_CHUNK_SIZE;
+	private volatile int evaluationThreads = 1;
+	private final ThreadPoolExecutor evaluationExecutor = newEvaluationExecutor();
 	
-	public abstract OutputSet process(InputSet input);
+	public abstract OutputSet process(InputSet input, StateType state);
 	protected abstract void onTrain(SupervisedInOutSet supervisedInOutSet);
-	protected abstract CostSet getCost(CostFunction function, SupervisedInOutSet set, OutputSet actualOutput);
+	protected abstract CostSet getCost(CostFunction function, SupervisedInOutSet set, OutputSet actualOutput, StateType state);
 	protected abstract StateType getNewState(long seed);
+	protected abstract StateType copyState(StateType state);
+	protected abstract UnrolledParameters getUnrolledParameters();
+	
+	/**
+	 * Returns the derivative of the cost on the given set with respect to the {@link #getParameters() parameters}, without changing them.
+	 */
+	public abstract UnrolledParameterErrors getCostDerivative(SupervisedInOutSet set);
 	
 	
 	public SupervisedLearner(CostFunction costFunction, ActivationFunction activationFunction, OptimizationFunction optimizationFunction, WeightApplyFunction weightApplyFunction, DataSet dataSet) {
@@ -57,6 +92,55 @@ public abstract class SupervisedLearner<StateType extends ExperimentState> imple
 		return dataSet;
 	}
 	
+	/**
+	 * Returns the registry this learner records its {@link TrainingMetrics training metrics} into. It is disabled by default.
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+	
+	public int getEvaluationChunkSize() {
+		return evaluationChunkSize;
+	}
+	
+	public int getEvaluationThreads() {
+		return evaluationThreads;
+	}
+	
+	/**
+	 * Sets how costs of large sets are computed. Sets with more than {@code chunkSize} sets are pushed through the learner chunk by chunk, so the memory needed does not grow with the set; the chunks are spread over {@code threads} threads. The threads are daemons that are kept between evaluations and stop after a minute without work.
+	 */
+	public void setEvaluationChunking(int chunkSize, int threads) {
+		Requirements.positive(chunkSize, "evaluation chunk size");
+		Requirements.positive(threads, "evaluation thread count");
+		
+		synchronized (evaluationExecutor) {
+			if (threads > evaluationExecutor.getMaximumPoolSize()) {
+				evaluationExecutor.setMaximumPoolSize(threads);
+				evaluationExecutor.setCorePoolSize(threads);
+			} else {
+				evaluationExecutor.setCorePoolSize(threads);
+				evaluationExecutor.setMaximumPoolSize(threads);
+			}
+			this.evaluationChunkSize = chunkSize;
+			this.evaluationThreads = threads;
+		}
+	}
+	
+	private static ThreadPoolExecutor newEvaluationExecutor() {
+		ThreadPoolExecutor result = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), runnable -> {
+			Thread thread = new Thread(runnable, "Evaluation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		result.allowCoreThreadTimeOut(true);
+		return result;
+	}
+	
+	public double getSamplesPerSecond() {
+		return getMetrics().getRate(TrainingMetrics.SAMPLES);
+	}
+	
 	public int getInputSize() {
 		return getDataSet().getInputSize();
 	}
@@ -65,8 +149,107 @@ public abstract class SupervisedLearner<StateType extends ExperimentState> imple
 		return getDataSet().getOutputSize();
 	}
 	
+	public OutputSet process(InputSet input) {
+		return process(input, getState());
+	}
+	
+	/**
+	 * Processes the input with the latest {@link #getPublishedState() published state}. Unlike {@link #process(InputSet)}, this is safe to call while another thread trains.
+	 * 
+	 * @throws IllegalStateException if no state was published yet; falling back to the current state would not be safe while training
+	 */
+	public OutputSet processPublished(InputSet input) {
+		StateType state = publishedState.get();
+		if (state == null) throw new IllegalStateException("No state was published yet; call publishState() or setPublishingInterval(int) first");
+		return process(input, state);
+	}
+	
+	/**
+	 * Returns the cost on the given set as a function of the unrolled parameters, for optimization functions that evaluate it at more than one point.
+	 */
+	protected Objective getObjective(SupervisedInOutSet set) {
+		Requirements.nonNull(set, "set");
+		
+		return parameters -> {
+			parameters.reshapeOriginals();
+			return getCost(set).getSum();
+		};
+	}
+	
+	public CostSet getCost(CostFunction function, SupervisedInOutSet set, StateType state) {
+		Requirements.nonNull(set, "set");
+		Requirements.nonNull(state, "state");
+		
+		CostFunction costFunction = function == null ? getCostFunction() : function;
+		if (set.getSize() <= getEvaluationChunkSize()) return getCost(costFunction, set, process(set.getInputSet(), state), state);
+		return getChunkedCost(costFunction, set, state);
+	}
+	
+	/**
+	 * Computes the cost of the set chunk by chunk. Every cost function computes the mean cost over the sets of each output, so the cost of the whole set is the mean of the chunks' costs, weighted by their sizes.
+	 */
+	private CostSet getChunkedCost(CostFunction function, SupervisedInOutSet set, StateType state) {
+		int chunkSize = getEvaluationChunkSize();
+		int chunkCount = (set.getSize() + chunkSize - 1) / chunkSize;
+		int threads = Math.min(getEvaluationThreads(), chunkCount);
+		AtomicInteger nextChunk = new AtomicInteger();
+		
+		List<double[]> partials = new ArrayList<double[]>();
+		if (threads == 1) {
+			partials.add(getChunkCostSums(function, set, state, chunkSize, chunkCount, nextChunk));
+		} else {
+			List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+			try {
+				for (int t = 0; t < threads; t++) {
+					futures.add(evaluationExecutor.submit(() -> getChunkCostSums(function, set, state, chunkSize, chunkCount, nextChunk)));
+				}
+				for (Future<double[]> future : futures) {
+					partials.add(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while computing the cost", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Computing the cost failed", e.getCause());
+			} finally {
+				for (Future<double[]> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+		
+		double[] result = null;
+		for (double[] partial : partials) {
+			if (partial == null) continue;
+			if (result == null) result = new double[partial.length];
+			for (int j = 0; j < result.length; j++) {
+				result[j] += partial[j];
+			}
+		}
+		for (int j = 0; j < result.length; j++) {
+			result[j] /= set.getSize();
+		}
+		return new CostSet(result);
+	}
+	
+	/**
+	 * Takes chunks from the shared counter until none are left, and returns the sums of their costs weighted by their sizes, or null if no chunk was left.
+	 */
+	private double[] getChunkCostSums(CostFunction function, SupervisedInOutSet set, StateType state, int chunkSize, int chunkCount, AtomicInteger nextChunk) {
+		double[] sums = null;
+		for (int i = nextChunk.getAndIncrement(); i < chunkCount; i = nextChunk.getAndIncrement()) {
+			SupervisedInOutSet chunk = set.getRange(i * chunkSize, Math.min((i + 1) * chunkSize, set.getSize()));
+			INDArray cost = VectorizedData.getINDArray(getCost(function, chunk, process(chunk.getInputSet(), state), state));
+			if (sums == null) sums = new double[cost.length()];
+			for (int j = 0; j < sums.length; j++) {
+				sums[j] += cost.getDouble(j) * chunk.getSize();
+			}
+		}
+		return sums;
+	}
+	
 	public CostSet getCost(CostFunction function, SupervisedInOutSet set) {
-		return getCost(function == null ? getCostFunction() : function, set, process(set.getInputSet()));
+		return getCost(function, set, getState());
 	}
 	
 	public CostSet getCost(SupervisedInOutSet set) {
@@ -110,9 +293,14 @@ public abstract class SupervisedLearner<StateType extends ExperimentState> imple
 		return getState().getOptimizationData();
 	}
 	
+	/**
+	 * Makes the given state the current one. The published state is copied first, as readers may be using it while this learner trains.
+	 */
 	public void restoreState(StateType state) {
 		Requirements.nonNull(state, "state");
+		if (state == publishedState.get()) state = copyState(state);
 		this.experimentState = state;
+		if (publishingInterval > 0) publishState();
 	}
 	
 	public StateType restoreDefaultState() {
@@ -121,10 +309,69 @@ public abstract class SupervisedLearner<StateType extends ExperimentState> imple
 	}
 	
 	public StateType recreateDefaultState() {
-		seed = Util.getRandom().nextLong() ^ System.currentTimeMillis();
+		seed = Util.getRandom().nextLong();
 		return restoreDefaultState();
 	}
 	
+	public StateType getStateSnapshot() {
+		return copyState(getState());
+	}
+	
+	/**
+	 * Returns a copy of all parameters of the current state, unrolled into a single column.
+	 */
+	public INDArray getParameters() {
+		return VectorizedData.getINDArray(getUnrolledParameters());
+	}
+	
+	/**
+	 * Overwrites all parameters of the current state with the given column, in the order of {@link #getParameters()}. The optimization data is kept.
+	 */
+	public void setParameters(INDArray parameters) {
+		Requirements.nonNull(parameters, "parameters");
+		UnrolledParameters unrolled = getUnrolledParameters();
+		Requirements.equal(parameters.length(), unrolled.getDataLength(), "parameter count");
+		
+		Nd4j.copy(parameters.reshape(parameters.length(), 1), VectorizedData.getINDArray(unrolled));
+		unrolled.reshapeOriginals();
+	}
+	
+	
+	/**
+	 * Returns a copy of the state that is only used to process inputs. Learners may override this to make a cheaper copy than {@link #copyState(ExperimentState)}, for example one without optimization data.
+	 */
+	protected StateType copyStateForPublishing(StateType state) {
+		return copyState(state);
+	}
+	
+	/**
+	 * Returns the latest published state, or null if none was published yet. Published states are never modified, so other threads can process inputs with them while this learner trains.
+	 */
+	public StateType getPublishedState() {
+		return publishedState.get();
+	}
+	
+	public int getPublishingInterval() {
+		return publishingInterval;
+	}
+	
+	/**
+	 * Makes every {@code interval}th training step publish a copy of the current state, in the style of read-copy-update; 0 turns publishing off. Publishes the current state right away unless turned off. Must be called from the training thread.
+	 */
+	public void setPublishingInterval(int interval) {
+		this.publishingInterval = Requirements.nonNegative(interval, "publishing interval");
+		if (interval > 0) publishState();
+	}
+	
+	/**
+	 * Copies the current state and makes it the published state. Must be called from the training thread.
+	 */
+	public StateType publishState() {
+		StateType result = copyStateForPublishing(getState());
+		publishedState.set(result);
+		return result;
+	}
+	
 	
 	
 	public final void train() {
@@ -143,8 +390,102 @@ public abstract class SupervisedLearner<StateType extends ExperimentState> imple
 		Requirements.positive(batchSize, "batch size");
 		Requirements.smallerOrEqual(batchSize, trainingSet.getSize(), "batch size");
 
-		onTrain(getDataSet().getTrainingSet().getRandomizedBatch(batchSize));
+		MetricsRegistry metrics = getMetrics();
+		long allocated = metrics.getAllocatedBytes();
+		long started = metrics.start();
+		
+		SupervisedInOutSet batch = getDataSet().getTrainingSet().getRandomizedBatch(batchSize);
+		metrics.stop(TrainingMetrics.BATCH_SAMPLING, started);
+		onTrain(batch);
+		getState().increaseIterationCount();
+		int interval = publishingInterval;
+		if (interval > 0 && getState().getIterationCount() % interval == 0) publishState();
+		
+		if (started != 0) {
+			metrics.stop(TrainingMetrics.STEP, started);
+			metrics.record(TrainingMetrics.ALLOCATED_BYTES, metrics.getAllocatedBytes() - allocated);
+			metrics.increment(TrainingMetrics.SAMPLES, batchSize);
+			metrics.increment(TrainingMetrics.STEPS, 1);
+		}
+	}
+	
+	/**
+	 * Takes a single optimization step with a cost derivative that was computed elsewhere, for example by {@link #getCostDerivative(SupervisedInOutSet)} on another copy of this learner. As the cost cannot be evaluated here, the optimization function gets no objective; ones that {@link OptimizationFunction#needsObjective() need one} are rejected.
+	 */
+	public final void train(UnrolledParameterErrors costDerivative) {
+		Requirements.nonNull(costDerivative, "cost derivative");
+		requireObjectiveFreeOptimization();
+		
+		MetricsRegistry metrics = getMetrics();
+		long started = metrics.start();
+		UnrolledParameters params = getUnrolledParameters();
+		getState().setOptimizationData(getOptimizationFunction().step(getState().getOptimizationData(), params, costDerivative, null));
+		metrics.stop(TrainingMetrics.OPTIMIZER_STEP, started);
+		
+		started = metrics.start();
+		params.reshapeOriginals();
+		metrics.stop(TrainingMetrics.RESHAPE, started);
+		
 		getState().increaseIterationCount();
+		int interval = publishingInterval;
+		if (interval > 0 && getState().getIterationCount() % interval == 0) publishState();
+		metrics.increment(TrainingMetrics.STEPS, 1);
+	}
+	
+	/**
+	 * Throws if the optimization function {@link OptimizationFunction#needsObjective() needs an objective}, and so cannot {@link #train(UnrolledParameterErrors) step on derivatives computed elsewhere}.
+	 */
+	public void requireObjectiveFreeOptimization() {
+		Requirements.throwErrorIf(getOptimizationFunction().needsObjective(), Requirements.FormatStrings.mustNotBe, "optimization function", "one that needs an objective");
+	}
+	
+	public final EarlyStoppingResult train(int maxIterations, EarlyStoppingPolicy policy) {
+		return train(maxIterations, 0, policy, null);
+	}
+	
+	public final EarlyStoppingResult train(int maxIterations, int batchSize, EarlyStoppingPolicy policy) {
+		return train(maxIterations, batchSize, policy, null);
+	}
+	
+	/**
+	 * Trains for at most maxIterations iterations, validating according to the given policy and stopping as soon as the validation cost has not improved for too long. A batch size of zero or less trains on the whole training set.
+	 * <p>
+	 * If the policy validates in the background, each validation is computed on a snapshot of the state while training continues; its result is only looked at when the next validation is due.
+	 * 
+	 * @param listener called after every validation; may be null
+	 */
+	public final EarlyStoppingResult train(int maxIterations, int batchSize, EarlyStoppingPolicy policy, ValidationListener listener) {
+		Requirements.positive(maxIterations, "max iterations");
+		Requirements.nonNull(policy, "early stopping policy");
+		
+		ValidationTracker tracker = new ValidationTracker(policy, listener);
+		ExecutorService executor = policy.isBackground() ? Executors.newSingleThreadExecutor(EarlyStoppingPolicy::newValidationThread) : null;
+		try {
+			int i;
+			for (i = 1; i <= maxIterations; i++) {
+				if (batchSize > 0) train(batchSize);
+				else train();
+				
+				if (i % policy.getValidateEvery() != 0 && i != maxIterations) continue;
+				
+				if (executor == null) {
+					tracker.register(getIterationCount(), getValidationError(policy.getCostFunction()), null);
+				} else {
+					tracker.awaitPending();
+					StateType snapshot = getStateSnapshot();
+					tracker.submit(getIterationCount(), snapshot, executor.submit(() -> getCost(policy.getCostFunction(), getDataSet().getValidationSet(), snapshot)));
+				}
+				
+				if (tracker.shouldStop()) break;
+			}
+			tracker.awaitPending();
+			
+			boolean stoppedEarly = i < maxIterations;
+			if (policy.isRestoringBest() && tracker.bestState != null) restoreState(tracker.bestState);
+			return new EarlyStoppingResult(Math.min(i, maxIterations), tracker.bestIteration, tracker.bestError, stoppedEarly);
+		} finally {
+			if (executor != null) executor.shutdownNow();
+		}
 	}
 	
 	
@@ -158,9 +499,81 @@ public abstract class SupervisedLearner<StateType extends ExperimentState> imple
 	
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getIterationCount()", getIterationCount()).add("getCostFunction()", getCostFunction());
-		return builder.toString();
+		return builder;
+	}
+	
+	
+	
+	
+	private final class ValidationTracker {
+		private final EarlyStoppingPolicy policy;
+		private final ValidationListener listener;
+		
+		private StateType bestState;
+		private CostSet bestError;
+		private double bestCost = Double.POSITIVE_INFINITY;
+		private int bestIteration = 0;
+		private int sinceImprovement = 0;
+		
+		private Future<CostSet> pending;
+		private StateType pendingState;
+		private int pendingIteration;
+		
+		ValidationTracker(EarlyStoppingPolicy policy, ValidationListener listener) {
+			this.policy = policy;
+			this.listener = listener;
+		}
+		
+		void submit(int iteration, StateType snapshot, Future<CostSet> future) {
+			pending = future;
+			pendingState = snapshot;
+			pendingIteration = iteration;
+		}
+		
+		void awaitPending() {
+			if (pending == null) return;
+			
+			CostSet error;
+			try {
+				error = pending.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for validation", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Validation failed", e.getCause());
+			}
+			StateType state = pendingState;
+			pending = null;
+			pendingState = null;
+			register(pendingIteration, error, state);
+		}
+		
+		void register(int iteration, CostSet error, StateType snapshot) {
+			double cost = error.getSum();
+			boolean improved = cost < bestCost - policy.getMinImprovement();
+			if (improved) {
+				bestCost = cost;
+				bestError = error;
+				bestIteration = iteration;
+				sinceImprovement = 0;
+				if (policy.isRestoringBest()) bestState = snapshot != null ? snapshot : getStateSnapshot();
+			} else {
+				sinceImprovement++;
+			}
+			
+			if (listener != null) listener.onValidation(iteration, error, improved);
+		}
+		
+		boolean shouldStop() {
+			return sinceImprovement > policy.getPatience();
+		}
 	}
 	
 }
@@ -0,0 +1,26 @@
+package com.n2d4.rachel.learning;
+
+import com.n2d4.rachel.util.Exceptions;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
+
+/**
+ * Names of the metrics {@link SupervisedLearner SupervisedLearners} record into their {@link MetricsRegistry}. Timings are in nanoseconds; names ending in a dot are suffixed with the layer index.
+ */
+public final class TrainingMetrics {
+	
+	public static final String BATCH_SAMPLING = "train.sampling";
+	public static final String FORWARD = "train.forward.";
+	public static final String COST = "train.cost";
+	public static final String BACKWARD = "train.backward.";
+	public static final String OPTIMIZER_STEP = "train.optimizer";
+	public static final String RESHAPE = "train.reshape";
+	public static final String STEP = "train.step";
+	public static final String ALLOCATED_BYTES = "train.allocated";
+	public static final String SAMPLES = "train.samples";
+	public static final String STEPS = "train.steps";
+	
+	private TrainingMetrics() {
+		Exceptions.privateConstructor();
+	}
+	
+}
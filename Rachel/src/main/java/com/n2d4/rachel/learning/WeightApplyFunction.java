@@ -1,10 +1,14 @@
 package com.n2d4.rachel.learning;
 
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
 import com.n2d4.rachel.vectorization.LayerInputSet;
 import com.n2d4.rachel.vectorization.LayerWeights;
 import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
 import com.n2d4.rachel.vectorization.VectorizedData;
 import com.n2d4.rachel.vectorization.derivatives.ParameterApplyDerivative;
+import com.n2d4.rachel.vectorization.derivatives.SparseParameterApplyDerivative;
 
 public interface WeightApplyFunction {
 	public UnactivatedLayerOutputSet getOutput(LayerInputSet input, LayerWeights weights);
@@ -33,4 +37,28 @@ public interface WeightApplyFunction {
 		}
 		
 	};
+	
+	/**
+	 * Same as {@link #MATRIX_MULT}, except for {@link LayerInputSet#isSparse() sparse} inputs: the weight rows of the {@link LayerInputSet#getActiveColumns() active columns} are gathered in one operation and multiplied with the {@link LayerInputSet#getActiveColumnSelection() selection} of those columns, and the weight derivative is only scattered into those rows. This makes the cost of the first layer proportional to the amount of features active in the batch rather than the input size. Dense inputs, such as the ones of hidden layers, are multiplied as usual.
+	 */
+	public static WeightApplyFunction SPARSE_MATRIX_MULT = new WeightApplyFunction() {
+		@Override public UnactivatedLayerOutputSet getOutput(LayerInputSet input, LayerWeights weights) {
+			if (!input.isSparse()) return MATRIX_MULT.getOutput(input, weights);
+			
+			INDArray rows = Nd4j.pullRows(VectorizedData.getINDArray(weights), 1, input.getActiveColumns());
+			return new UnactivatedLayerOutputSet(input.getActiveColumnSelection().mmul(rows));
+		}
+
+		@Override
+		public ParameterApplyDerivative<LayerWeights> getWeightDerivative(LayerInputSet input, LayerWeights weights) {
+			if (!input.isSparse()) return MATRIX_MULT.getWeightDerivative(input, weights);
+			return new SparseParameterApplyDerivative(input);
+		}
+
+		@Override
+		public ParameterApplyDerivative<LayerInputSet> getInputDerivative(LayerInputSet input, LayerWeights weights) {
+			return MATRIX_MULT.getInputDerivative(input, weights);
+		}
+		
+	};
 }
@@ -0,0 +1,370 @@
+package com.n2d4.rachel.learning.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.learning.SupervisedLearner;
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.ParameterError;
+import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
+
+/**
+ * The server of data-parallel training. {@link ParameterServerWorker Workers} push cost derivatives over TCP; the server applies them with the learner's optimization function and answers with the new parameters.
+ * <p>
+ * Training starts once all workers have joined. How pushes are combined depends on the {@link Mode}.
+ */
+public class ParameterServer implements Closeable, Debuggable {
+	
+	public enum Mode {
+		/**
+		 * Waits for a derivative from every worker, averages them weighted by their sample counts and takes a single step, so all workers continue from the same parameters. Equivalent to training on the union of their batches.
+		 */
+		SYNCHRONOUS,
+		/**
+		 * Takes a step for every derivative as soon as it arrives, but holds back the answer to a worker that is more than {@link ParameterServer#getMaxStaleness() the maximum staleness} pushes ahead of the slowest one.
+		 */
+		BOUNDED_STALENESS
+	}
+	
+	public static final int DEFAULT_MAX_STALENESS = 4;
+	
+	public static final String PUSHES = "ps.pushes";
+	public static final String STEPS = "ps.steps";
+	public static final String STALENESS = "ps.staleness";
+	public static final String PUSH_WAIT = "ps.wait";
+	public static final String ACCEPT_FAILURES = "ps.acceptFailures";
+	
+	private final SupervisedLearner<?> learner;
+	private final Mode mode;
+	private final int workerCount;
+	private final int maxStaleness;
+	private final int parameterCount;
+	private final ServerSocket serverSocket;
+	private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final Thread acceptor;
+	private volatile boolean running = true;
+	private volatile RuntimeException failure;
+	
+	// Guarded by this
+	private final int[] clocks;
+	private final boolean[] active;
+	private int joinedCount = 0;
+	private int activeCount = 0;
+	private int version = 0;
+	private INDArray pendingSum;
+	private int pendingSamples = 0;
+	private int pendingCount = 0;
+	
+	/**
+	 * Listens on the given port of the loopback address; 0 picks a free port.
+	 */
+	public ParameterServer(SupervisedLearner<?> learner, int port, int workerCount, Mode mode) {
+		this(learner, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), workerCount, mode, DEFAULT_MAX_STALENESS);
+	}
+	
+	/**
+	 * @param maxStaleness only used in {@link Mode#BOUNDED_STALENESS}
+	 */
+	public ParameterServer(SupervisedLearner<?> learner, InetSocketAddress address, int workerCount, Mode mode, int maxStaleness) {
+		this.learner = Requirements.nonNull(learner, "learner");
+		learner.requireObjectiveFreeOptimization();
+		Requirements.nonNull(address, "address");
+		this.workerCount = Requirements.positive(workerCount, "worker count");
+		this.mode = Requirements.nonNull(mode, "mode");
+		this.maxStaleness = Requirements.nonNegative(maxStaleness, "max staleness");
+		this.parameterCount = learner.getParameters().length();
+		this.clocks = new int[workerCount];
+		this.active = new boolean[workerCount];
+		
+		try {
+			this.serverSocket = new ServerSocket();
+			serverSocket.bind(address);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		this.acceptor = newThread(this::acceptWorkers, "Parameter server acceptor");
+		acceptor.start();
+	}
+	
+	
+	public SupervisedLearner<?> getLearner() {
+		return learner;
+	}
+	
+	public Mode getMode() {
+		return mode;
+	}
+	
+	public int getWorkerCount() {
+		return workerCount;
+	}
+	
+	public int getMaxStaleness() {
+		return maxStaleness;
+	}
+	
+	public InetSocketAddress getAddress() {
+		return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+	}
+	
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+	
+	/**
+	 * Returns the amount of steps taken so far, which is also the version of the parameters sent to workers.
+	 */
+	public synchronized int getVersion() {
+		return version;
+	}
+	
+	public synchronized int getActiveWorkerCount() {
+		return activeCount;
+	}
+	
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Returns the amount of derivatives received from all workers per second.
+	 */
+	public double getPushRate() {
+		return metrics.getRate(PUSHES);
+	}
+	
+	/**
+	 * Returns the exception of the step that stopped the server, or null if no step failed.
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Waits until every worker has joined and left again.
+	 * 
+	 * @throws IllegalStateException if a step failed, which stops the server; the cause is the step's exception
+	 */
+	public synchronized void awaitWorkers() throws InterruptedException {
+		while (running && (joinedCount < workerCount || activeCount > 0)) {
+			wait();
+		}
+		if (failure != null) throw new IllegalStateException("A step of the parameter server failed", failure);
+	}
+	
+	@Override
+	public void close() {
+		running = false;
+		synchronized (this) {
+			notifyAll();
+		}
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+		for (Socket socket : sockets) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Closing anyway
+			}
+		}
+	}
+	
+	
+	private void acceptWorkers() {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+				sockets.add(socket);
+				newThread(() -> serve(socket), "Parameter server connection").start();
+			} catch (IOException e) {
+				if (running) metrics.increment(ACCEPT_FAILURES, 1);
+			}
+		}
+	}
+	
+	private void serve(Socket socket) {
+		int id = -1;
+		try {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			if (in.readInt() != ParameterServerProtocol.MAGIC) throw new IOException("Not a parameter server worker");
+			int count = in.readInt();
+			if (count != parameterCount) throw new IOException("Worker parameter count " + count + " does not match " + parameterCount);
+			
+			id = join();
+			out.write(encodeParameters());
+			out.flush();
+			while (running) {
+				byte type = in.readByte();
+				if (type == ParameterServerProtocol.DONE) break;
+				if (type != ParameterServerProtocol.GRADIENT) throw new IOException("Unexpected message type " + type);
+				int basedOn = in.readInt();
+				int sampleCount = in.readInt();
+				INDArray gradient = ParameterServerProtocol.readColumn(in, parameterCount);
+				metrics.increment(PUSHES, 1);
+				
+				out.write(push(id, basedOn, sampleCount, gradient));
+				out.flush();
+			}
+		} catch (IOException e) {
+			// The worker disconnected or the server was closed
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			fail(e);
+		} finally {
+			try {
+				if (id >= 0) leave(id);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+			sockets.remove(socket);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Closing anyway
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the first failed step's exception and closes the server, as the parameters are left in an unknown state.
+	 */
+	private void fail(RuntimeException e) {
+		synchronized (this) {
+			if (failure == null) failure = e;
+		}
+		close();
+	}
+	
+	/**
+	 * Registers a worker and waits until all of them have joined. Returns its id.
+	 */
+	private synchronized int join() throws IOException, InterruptedException {
+		if (joinedCount == workerCount) throw new IOException("All " + workerCount + " workers already joined");
+		int id = joinedCount++;
+		active[id] = true;
+		activeCount++;
+		notifyAll();
+		while (running && joinedCount < workerCount) {
+			wait();
+		}
+		if (!running) throw new IOException("The server was closed");
+		return id;
+	}
+	
+	private synchronized void leave(int id) {
+		active[id] = false;
+		activeCount--;
+		if (running && mode == Mode.SYNCHRONOUS && pendingCount > 0 && pendingCount >= activeCount) applyPending();
+		notifyAll();
+	}
+	
+	/**
+	 * Applies a derivative according to the mode and returns the parameters message to answer with.
+	 */
+	private synchronized byte[] push(int id, int basedOn, int sampleCount, INDArray gradient) throws IOException, InterruptedException {
+		if (sampleCount <= 0) throw new IOException("Sample count must be positive");
+		long started = metrics.start();
+		metrics.record(STALENESS, version - basedOn);
+		
+		if (mode == Mode.SYNCHRONOUS) {
+			INDArray weighted = gradient.muli(sampleCount);
+			pendingSum = pendingSum == null ? weighted : pendingSum.addi(weighted);
+			pendingSamples += sampleCount;
+			pendingCount++;
+			
+			int target = version + 1;
+			if (pendingCount >= activeCount) applyPending();
+			while (running && version < target) {
+				wait();
+			}
+		} else {
+			apply(gradient);
+			clocks[id]++;
+			while (running && clocks[id] - getSlowestClock() > maxStaleness) {
+				wait();
+			}
+		}
+		
+		if (!running) throw new IOException("The server was closed");
+		metrics.stop(PUSH_WAIT, started);
+		return encodeParameters();
+	}
+	
+	private void applyPending() {
+		INDArray gradient = pendingSum.divi(pendingSamples);
+		pendingSum = null;
+		pendingSamples = 0;
+		pendingCount = 0;
+		apply(gradient);
+	}
+	
+	private void apply(INDArray gradient) {
+		try {
+			learner.train(new UnrolledParameterErrors(new ParameterError<VectorizedData>(gradient)));
+			version++;
+			metrics.increment(STEPS, 1);
+		} finally {
+			notifyAll();
+		}
+	}
+	
+	private int getSlowestClock() {
+		int result = Integer.MAX_VALUE;
+		for (int i = 0; i < clocks.length; i++) {
+			if (active[i]) result = Math.min(result, clocks[i]);
+		}
+		return result;
+	}
+	
+	private synchronized byte[] encodeParameters() {
+		return ParameterServerProtocol.encodeParameters(version, learner.getParameters());
+	}
+	
+	private static Thread newThread(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getAddress()", getAddress()).add("getMode()", getMode())
+				.add("getWorkerCount()", getWorkerCount()).add("getVersion()", getVersion())
+				.add("getMetrics()", getMetrics()).add("getFailure()", getFailure());
+		return builder;
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.n2d4.rachel.learning.distributed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.Exceptions;
+
+/**
+ * The wire format between {@link ParameterServerWorker workers} and a {@link ParameterServer}. Values are sent as doubles.
+ */
+final class ParameterServerProtocol {
+	
+	static final int MAGIC = 0x50_53_52_56;
+	static final byte PARAMETERS = 1;
+	static final byte GRADIENT = 2;
+	static final byte DONE = 3;
+	
+	private ParameterServerProtocol() {
+		Exceptions.privateConstructor();
+	}
+	
+	
+	static byte[] encodeParameters(int version, INDArray parameters) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(PARAMETERS);
+			out.writeInt(version);
+			writeColumn(out, parameters);
+		} catch (IOException e) {
+			throw new AssertionError(e);		// ByteArrayOutputStream never throws
+		}
+		return bytes.toByteArray();
+	}
+	
+	static void writeGradient(DataOutputStream out, int version, int sampleCount, INDArray gradient) throws IOException {
+		out.writeByte(GRADIENT);
+		out.writeInt(version);
+		out.writeInt(sampleCount);
+		writeColumn(out, gradient);
+	}
+	
+	static void writeColumn(DataOutputStream out, INDArray column) throws IOException {
+		for (int i = 0; i < column.length(); i++) {
+			out.writeDouble(column.getDouble(i));
+		}
+	}
+	
+	/**
+	 * Reads a column of the given length into a new (length, 1) array.
+	 */
+	static INDArray readColumn(DataInputStream in, int length) throws IOException {
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readDouble();
+		}
+		return Nd4j.create(values, new int[] {length, 1});
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.n2d4.rachel.learning.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+
+import com.n2d4.rachel.learning.SupervisedLearner;
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.SupervisedInOutSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * A worker of data-parallel training. It pushes cost derivatives of randomized batches to a {@link ParameterServer} and takes over the server's parameters after every push.
+ */
+public class ParameterServerWorker implements Closeable, Debuggable {
+	
+	private final SupervisedLearner<?> learner;
+	private final int batchSize;
+	private final Socket socket;
+	private final DataOutputStream out;
+	private final DataInputStream in;
+	private final int parameterCount;
+	private int version;
+	private int stepCount = 0;
+	
+	/**
+	 * Connects to the server and waits until every worker has joined and the server's parameters arrived.
+	 */
+	public ParameterServerWorker(SupervisedLearner<?> learner, String host, int port, int batchSize) {
+		this.learner = Requirements.nonNull(learner, "learner");
+		Requirements.nonNull(host, "host");
+		this.batchSize = Requirements.positive(batchSize, "batch size");
+		Requirements.smallerOrEqual(batchSize, learner.getDataSet().getTrainingSet().getSize(), "batch size");
+		this.parameterCount = learner.getParameters().length();
+		
+		try {
+			this.socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out.writeInt(ParameterServerProtocol.MAGIC);
+			out.writeInt(parameterCount);
+			out.flush();
+			readParameters();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	
+	public SupervisedLearner<?> getLearner() {
+		return learner;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Returns the version of the parameters the learner currently has.
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
+	public int getStepCount() {
+		return stepCount;
+	}
+	
+	/**
+	 * Pushes the cost derivative of a randomized batch and waits for the server's new parameters.
+	 */
+	public void step() {
+		SupervisedInOutSet batch = learner.getDataSet().getTrainingSet().getRandomizedBatch(batchSize);
+		try {
+			ParameterServerProtocol.writeGradient(out, version, batch.getSize(), VectorizedData.getINDArray(learner.getCostDerivative(batch)));
+			out.flush();
+			readParameters();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		stepCount++;
+	}
+	
+	public void step(int steps) {
+		Requirements.nonNegative(steps, "steps");
+		
+		for (int i = 0; i < steps; i++) {
+			step();
+		}
+	}
+	
+	/**
+	 * Tells the server this worker leaves, so others no longer wait for it, and disconnects.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			out.writeByte(ParameterServerProtocol.DONE);
+			out.flush();
+		} finally {
+			socket.close();
+		}
+	}
+	
+	
+	private void readParameters() throws IOException {
+		byte type = in.readByte();
+		if (type != ParameterServerProtocol.PARAMETERS) throw new IOException("Unexpected message type " + type);
+		version = in.readInt();
+		learner.setParameters(ParameterServerProtocol.readColumn(in, parameterCount));
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getVersion()", getVersion()).add("getStepCount()", getStepCount())
+				.add("getBatchSize()", getBatchSize()).add("getLearner()", getLearner());
+		return builder;
+	}
+
+}
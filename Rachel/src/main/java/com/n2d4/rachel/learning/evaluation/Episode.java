@@ -0,0 +1,25 @@
+package com.n2d4.rachel.learning.evaluation;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * A single evaluation run, such as one hand or one game, that asks the learner for outputs one step at a time. The {@link MonteCarloEvaluator} collects the inputs of many episodes into one batch per step.
+ */
+public interface Episode {
+	
+	/**
+	 * Returns the inputs this episode needs outputs for next, one row per input, or null if the episode is over.
+	 */
+	public double[][] getPendingInputs();
+	
+	/**
+	 * Receives the learner's outputs for the inputs last returned by {@link #getPendingInputs()}, one row per input.
+	 */
+	public void receiveOutputs(INDArray outputs);
+	
+	/**
+	 * Adds this episode's result to the given report. Called once after the episode is over.
+	 */
+	public void report(EvaluationReport report);
+	
+}
@@ -0,0 +1,12 @@
+package com.n2d4.rachel.learning.evaluation;
+
+import java.util.Random;
+
+public interface EpisodeFactory {
+	
+	/**
+	 * Creates a new episode. All of its randomness must be drawn from the given random; the episode may keep it, as it is only used by the thread that plays the episode.
+	 */
+	public Episode create(Random random);
+	
+}
@@ -0,0 +1,148 @@
+package com.n2d4.rachel.learning.evaluation;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * The results of an evaluation: a confusion matrix for classifications and win, draw and loss counts for games. Episodes may record either or both.
+ */
+public class EvaluationReport implements Debuggable {
+	
+	private final int classCount;
+	private final long[][] confusion;
+	private long wins;
+	private long draws;
+	private long losses;
+	
+	public EvaluationReport(int classCount) {
+		this.classCount = Requirements.nonNegative(classCount, "class count");
+		this.confusion = new long[classCount][classCount];
+	}
+	
+	
+	public int getClassCount() {
+		return classCount;
+	}
+	
+	public void addPrediction(int expected, int predicted) {
+		Requirements.nonNegative(expected, "expected class");
+		Requirements.smallerThan(expected, classCount, "expected class");
+		Requirements.nonNegative(predicted, "predicted class");
+		Requirements.smallerThan(predicted, classCount, "predicted class");
+		
+		confusion[expected][predicted]++;
+	}
+	
+	/**
+	 * @param result 1 for a win, 0 for a draw and -1 for a loss
+	 */
+	public void addGameResult(int result) {
+		Requirements.throwErrorIf(result < -1 || result > 1, Requirements.FormatStrings.mustBe, "game result", "-1, 0 or 1");
+		
+		if (result > 0) wins++;
+		else if (result < 0) losses++;
+		else draws++;
+	}
+	
+	public void add(EvaluationReport other) {
+		Requirements.nonNull(other, "other report");
+		Requirements.equal(other.getClassCount(), getClassCount(), "class count");
+		
+		for (int i = 0; i < classCount; i++) {
+			for (int j = 0; j < classCount; j++) {
+				confusion[i][j] += other.confusion[i][j];
+			}
+		}
+		wins += other.wins;
+		draws += other.draws;
+		losses += other.losses;
+	}
+	
+	
+	public long getConfusion(int expected, int predicted) {
+		return confusion[expected][predicted];
+	}
+	
+	public long getPredictionCount() {
+		long result = 0;
+		for (long[] row : confusion) {
+			for (long count : row) {
+				result += count;
+			}
+		}
+		return result;
+	}
+	
+	public long getCorrectCount() {
+		long result = 0;
+		for (int i = 0; i < classCount; i++) {
+			result += confusion[i][i];
+		}
+		return result;
+	}
+	
+	public double getAccuracy() {
+		return getCorrectCount() / (double) getPredictionCount();
+	}
+	
+	public long getWins() {
+		return wins;
+	}
+	
+	public long getDraws() {
+		return draws;
+	}
+	
+	public long getLosses() {
+		return losses;
+	}
+	
+	public long getGameCount() {
+		return wins + draws + losses;
+	}
+	
+	
+	/**
+	 * Returns a human-readable summary, as printed by the experiments.
+	 */
+	public String getSummary() {
+		StringBuilder builder = new StringBuilder();
+		long predictions = getPredictionCount();
+		if (predictions > 0) {
+			builder.append("Correct: ").append(getCorrectCount()).append("/").append(predictions).append(String.format(" (%.1f%%)", 100 * getAccuracy())).append("\n");
+			for (int i = 0; i < classCount; i++) {
+				long total = 0;
+				for (int j = 0; j < classCount; j++) {
+					total += confusion[i][j];
+				}
+				builder.append("Class ").append(i).append(":");
+				for (int j = 0; j < classCount; j++) {
+					builder.append(" ").append(confusion[i][j]).append(String.format(" (%.1f%%)", 100 * confusion[i][j] / (double) total));
+				}
+				builder.append("\n");
+			}
+		}
+		long games = getGameCount();
+		if (games > 0) {
+			builder.append("Wins: ").append(wins).append(String.format(", %.2f%%", 100 * wins / (double) games)).append("\n");
+			builder.append("Draws: ").append(draws).append(String.format(", %.2f%%", 100 * draws / (double) games)).append("\n");
+			builder.append("Losses: ").append(losses).append(String.format(", %.2f%%", 100 * losses / (double) games)).append("\n");
+		}
+		return builder.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getPredictionCount()", getPredictionCount()).add("getAccuracy()", getAccuracy())
+				.add("getWins()", getWins()).add("getDraws()", getDraws()).add("getLosses()", getLosses());
+		return builder;
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.n2d4.rachel.learning.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import com.n2d4.rachel.learning.ExperimentState;
+import com.n2d4.rachel.learning.SupervisedLearner;
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.RandomStreams;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.SparseInputSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * Evaluates a learner on many randomly generated episodes on background threads, so training can go on meanwhile. Results do not depend on thread scheduling.
+ */
+public class MonteCarloEvaluator<StateType extends ExperimentState> implements Debuggable {
+	
+	public static final int DEFAULT_BATCH_SIZE = 256;
+	
+	/**
+	 * The first stream ID used by default. Kept far away from the IDs {@link RandomStreams#current()} assigns to threads.
+	 */
+	public static final long DEFAULT_STREAM_BASE = 1L << 48;
+	
+	private final SupervisedLearner<StateType> learner;
+	private final int classCount;
+	private final boolean sparseInput;
+	private final int threads;
+	private final int batchSize;
+	private final long streamBase;
+	private final AtomicInteger evaluationCount = new AtomicInteger();
+	private final ExecutorService executor;
+	
+	/**
+	 * Uses every processor but one, leaving the last one for training.
+	 */
+	public MonteCarloEvaluator(SupervisedLearner<StateType> learner, int classCount, boolean sparseInput) {
+		this(learner, classCount, sparseInput, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_BATCH_SIZE, DEFAULT_STREAM_BASE);
+	}
+	
+	/**
+	 * @param classCount the size of the reports' confusion matrices; 0 if the episodes only report game results
+	 * @param sparseInput whether the episodes' inputs consist of zeros and ones only and should be processed as a {@link SparseInputSet}
+	 */
+	public MonteCarloEvaluator(SupervisedLearner<StateType> learner, int classCount, boolean sparseInput, int threads, int batchSize, long streamBase) {
+		this.learner = Requirements.nonNull(learner, "learner");
+		this.classCount = Requirements.nonNegative(classCount, "class count");
+		this.sparseInput = sparseInput;
+		this.threads = Requirements.positive(threads, "thread count");
+		this.batchSize = Requirements.positive(batchSize, "batch size");
+		this.streamBase = streamBase;
+		this.executor = Executors.newFixedThreadPool(threads, MonteCarloEvaluator::newEvaluationThread);
+	}
+	
+	
+	public SupervisedLearner<StateType> getLearner() {
+		return learner;
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public int getEvaluationCount() {
+		return evaluationCount.get();
+	}
+	
+	
+	/**
+	 * Starts evaluating the given amount of episodes against a snapshot of the learner's current state and returns immediately.
+	 */
+	public CompletableFuture<EvaluationReport> submit(EpisodeFactory factory, int episodes) {
+		Requirements.nonNull(factory, "episode factory");
+		Requirements.positive(episodes, "episode count");
+		
+		StateType published = learner.getPublishedState();
+		StateType snapshot = published != null ? published : learner.getStateSnapshot();
+		long evaluation = evaluationCount.getAndIncrement();
+		int batchCount = (episodes + batchSize - 1) / batchSize;
+		List<CompletableFuture<EvaluationReport>> batches = new ArrayList<CompletableFuture<EvaluationReport>>();
+		for (int i = 0; i < batchCount; i++) {
+			long streamId = streamBase + (evaluation << 32) + i;
+			int size = Math.min(batchSize, episodes - i * batchSize);
+			batches.add(CompletableFuture.supplyAsync(() -> playBatch(factory, snapshot, RandomStreams.get(streamId), size), executor));
+		}
+		
+		return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).thenApply(v -> {
+			EvaluationReport result = new EvaluationReport(classCount);
+			for (CompletableFuture<EvaluationReport> batch : batches) {
+				result.add(batch.join());
+			}
+			return result;
+		});
+	}
+	
+	/**
+	 * Same as {@link #submit(EpisodeFactory, int)}, but waits for the evaluation to finish.
+	 */
+	public EvaluationReport evaluate(EpisodeFactory factory, int episodes) {
+		return submit(factory, episodes).join();
+	}
+	
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	
+	private EvaluationReport playBatch(EpisodeFactory factory, StateType snapshot, Random random, int size) {
+		List<Episode> active = new ArrayList<Episode>(size);
+		for (int i = 0; i < size; i++) {
+			active.add(factory.create(random));
+		}
+		
+		EvaluationReport report = new EvaluationReport(classCount);
+		List<Episode> waiting = new ArrayList<Episode>(size);
+		List<double[]> rows = new ArrayList<double[]>();
+		int[] rowCounts = new int[size];
+		while (!active.isEmpty()) {
+			waiting.clear();
+			rows.clear();
+			for (Episode episode : active) {
+				double[][] pending = episode.getPendingInputs();
+				if (pending == null) {
+					episode.report(report);
+					continue;
+				}
+				rowCounts[waiting.size()] = pending.length;
+				waiting.add(episode);
+				for (double[] row : pending) {
+					rows.add(row);
+				}
+			}
+			if (waiting.isEmpty()) break;
+			
+			InputSet input = new InputSet(rows.toArray(new double[rows.size()][]));
+			if (sparseInput) input = SparseInputSet.view(input);
+			INDArray output = VectorizedData.getINDArray(learner.process(input, snapshot));
+			
+			int row = 0;
+			for (int i = 0; i < waiting.size(); i++) {
+				waiting.get(i).receiveOutputs(output.get(NDArrayIndex.interval(row, row + rowCounts[i]), NDArrayIndex.all()));
+				row += rowCounts[i];
+			}
+			
+			List<Episode> swap = active;
+			active = waiting;
+			waiting = swap;
+		}
+		return report;
+	}
+	
+	private static Thread newEvaluationThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "Evaluation");
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getThreads()", getThreads()).add("getBatchSize()", getBatchSize())
+				.add("getEvaluationCount()", getEvaluationCount());
+		return builder;
+	}
+
+}
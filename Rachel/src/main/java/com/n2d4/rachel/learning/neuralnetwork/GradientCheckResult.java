@@ -0,0 +1,64 @@
+package com.n2d4.rachel.learning.neuralnetwork;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+
+public final class GradientCheckResult implements Debuggable {
+	
+	private final int[][] sampledIndices;
+	private final double[] maxRelativeErrors;
+	private final double[] meanRelativeErrors;
+	
+	GradientCheckResult(int[][] sampledIndices, double[] maxRelativeErrors, double[] meanRelativeErrors) {
+		this.sampledIndices = sampledIndices;
+		this.maxRelativeErrors = maxRelativeErrors;
+		this.meanRelativeErrors = meanRelativeErrors;
+	}
+	
+	
+	public int getLayerCount() {
+		return maxRelativeErrors.length;
+	}
+	
+	/**
+	 * Returns the flat (row-major) indices of the weights that were checked in the given layer.
+	 */
+	public int[] getSampledIndices(int layer) {
+		return sampledIndices[layer].clone();
+	}
+	
+	public double getMaxRelativeError(int layer) {
+		return maxRelativeErrors[layer];
+	}
+	
+	public double getMeanRelativeError(int layer) {
+		return meanRelativeErrors[layer];
+	}
+	
+	public double getMaxRelativeError() {
+		double result = 0;
+		for (double error : maxRelativeErrors) {
+			result = Math.max(result, error);
+		}
+		return result;
+	}
+	
+	public boolean passes(double tolerance) {
+		return getMaxRelativeError() <= tolerance;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getLayerCount()", getLayerCount()).add("getMaxRelativeErrors()", maxRelativeErrors)
+				.add("getMeanRelativeErrors()", meanRelativeErrors).add("getMaxRelativeError()", getMaxRelativeError());
+		return builder;
+	}
+	
+}
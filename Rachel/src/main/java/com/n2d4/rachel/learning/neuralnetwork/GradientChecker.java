@@ -0,0 +1,159 @@
+package com.n2d4.rachel.learning.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.Util;
+import com.n2d4.rachel.vectorization.SupervisedInOutSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.ParameterError;
+
+/**
+ * Verifies a {@link NeuralNetwork}'s backpropagation by comparing a random sample of its analytic weight derivatives with central differences of the cost.
+ */
+public class GradientChecker {
+	
+	public static final double DEFAULT_EPSILON = 0.0001;
+	
+	private final NeuralNetwork network;
+	private final int samplesPerLayer;
+	private final int threads;
+	private final double epsilon;
+	private final long seed;
+	
+	public GradientChecker(NeuralNetwork network, int samplesPerLayer) {
+		this(network, samplesPerLayer, Runtime.getRuntime().availableProcessors(), DEFAULT_EPSILON, Util.getRandom().nextLong());
+	}
+	
+	/**
+	 * @param samplesPerLayer the maximum amount of weights checked per layer
+	 * @param threads the amount of threads the perturbations are evaluated on
+	 * @param epsilon the size of each perturbation
+	 * @param seed the seed used to choose the sampled weights
+	 */
+	public GradientChecker(NeuralNetwork network, int samplesPerLayer, int threads, double epsilon, long seed) {
+		this.network = Requirements.nonNull(network, "network");
+		this.samplesPerLayer = Requirements.positive(samplesPerLayer, "samples per layer");
+		this.threads = Requirements.positive(threads, "thread count");
+		Requirements.throwErrorIf(!(epsilon > 0), Requirements.FormatStrings.mustBe, "epsilon", "positive");
+		this.epsilon = epsilon;
+		this.seed = seed;
+	}
+	
+	
+	public GradientCheckResult check(SupervisedInOutSet set) {
+		Requirements.nonNull(set, "set");
+		
+		NeuralNetworkState state = network.getStateSnapshot();
+		ParameterError<?>[] analytic = network.getWeightErrors(set, state);
+		
+		int layerCount = state.getLayerCount();
+		int[][] samples = new int[layerCount][];
+		Random random = new Random(seed);
+		for (int i = 0; i < layerCount; i++) {
+			samples[i] = sampleIndices(VectorizedData.getINDArray(state.getLayerWeights(i)).length(), random);
+		}
+		
+		double[][] numeric = new double[layerCount][];
+		for (int i = 0; i < layerCount; i++) {
+			numeric[i] = new double[samples[i].length];
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					NeuralNetworkState copy = new NeuralNetworkState(state);
+					int k = 0;
+					for (int layer = 0; layer < layerCount; layer++) {
+						INDArray arr = VectorizedData.getINDArray(copy.getLayerWeights(layer));
+						int columns = arr.columns();
+						for (int j = 0; j < samples[layer].length; j++) {
+							if (k++ % threads != thread) continue;
+							int index = samples[layer][j];
+							numeric[layer][j] = getNumericDerivative(network, set, copy, arr, index / columns, index % columns, epsilon);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while checking gradients", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Gradient check failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		double[] maxErrors = new double[layerCount];
+		double[] meanErrors = new double[layerCount];
+		for (int layer = 0; layer < layerCount; layer++) {
+			INDArray grad = VectorizedData.getINDArray(analytic[layer]);
+			int columns = grad.columns();
+			double sum = 0;
+			for (int j = 0; j < samples[layer].length; j++) {
+				int index = samples[layer][j];
+				double error = getRelativeError(grad.getDouble(index / columns, index % columns), numeric[layer][j]);
+				maxErrors[layer] = Math.max(maxErrors[layer], error);
+				sum += error;
+			}
+			meanErrors[layer] = samples[layer].length == 0 ? 0 : sum / samples[layer].length;
+		}
+		
+		return new GradientCheckResult(samples, maxErrors, meanErrors);
+	}
+	
+	
+	private int[] sampleIndices(int length, Random random) {
+		int count = Math.min(samplesPerLayer, length);
+		int[] all = new int[length];
+		for (int i = 0; i < length; i++) {
+			all[i] = i;
+		}
+		for (int i = 0; i < count; i++) {		// partial Fisher-Yates shuffle
+			int j = i + random.nextInt(length - i);
+			int tmp = all[i];
+			all[i] = all[j];
+			all[j] = tmp;
+		}
+		int[] result = new int[count];
+		System.arraycopy(all, 0, result, 0, count);
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the central difference of the network's cost with respect to a single weight. The weight is perturbed in place in the given array, which must belong to the given state, and restored afterwards.
+	 */
+	static double getNumericDerivative(NeuralNetwork network, SupervisedInOutSet set, NeuralNetworkState state, INDArray weights, int row, int column, double epsilon) {
+		double original = weights.getDouble(row, column);
+		try {
+			weights.putScalar(row, column, original + epsilon);
+			double plus = network.getCost(null, set, state).getSum();
+			weights.putScalar(row, column, original - epsilon);
+			double minus = network.getCost(null, set, state).getSum();
+			return (plus - minus) / (2 * epsilon);
+		} finally {
+			weights.putScalar(row, column, original);
+		}
+	}
+	
+	static double getRelativeError(double analytic, double numeric) {
+		double scale = Math.max(Math.abs(analytic), Math.abs(numeric));
+		return scale < Double.MIN_NORMAL ? 0 : Math.abs(analytic - numeric) / scale;
+	}
+	
+}
@@ -0,0 +1,150 @@
+package com.n2d4.rachel.learning.neuralnetwork;
+
+import java.util.Arrays;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.learning.WeightApplyFunction;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.LayerInputSet;
+import com.n2d4.rachel.vectorization.LayerOutputSet;
+import com.n2d4.rachel.vectorization.OutputSet;
+import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * Evaluates a {@link NeuralNetwork} on a single input that changes a few features at a time, such as a game board during a search. Changes can be reverted with {@link #undo()}.
+ * <p>
+ * The weights are read on every {@link #reset(double[]) reset}, so the evaluator must be reset after training.
+ */
+public class IncrementalEvaluator {
+	
+	private final NeuralNetwork network;
+	private NeuralNetworkState state;
+	private INDArray firstLayerWeights;
+	private INDArray accumulator;
+	private double[] input;
+	
+	private int[] undoFeatures = new int[16];
+	private double[] undoValues = new double[16];
+	private int undoDepth = 0;
+	
+	public IncrementalEvaluator(NeuralNetwork network) {
+		this.network = Requirements.nonNull(network, "network");
+		WeightApplyFunction weightApplyFunction = network.getWeightApplyFunction();
+		Requirements.throwErrorIf(weightApplyFunction != WeightApplyFunction.MATRIX_MULT && weightApplyFunction != WeightApplyFunction.SPARSE_MATRIX_MULT, Requirements.FormatStrings.mustBe, "weight apply function", "a matrix multiplication");
+	}
+	
+	
+	/**
+	 * Recomputes the accumulator from scratch for the given input, using the network's current weights, and clears the undo history.
+	 */
+	public void reset(double[] input) {
+		Requirements.nonNull(input, "input");
+		Requirements.equal(input.length, network.getInputSize(), "input length");
+		
+		state = network.getState();
+		firstLayerWeights = VectorizedData.getINDArray(state.getLayerWeights(0));
+		accumulator = firstLayerWeights.getRow(0).dup();
+		for (int i = 0; i < input.length; i++) {
+			addFeature(i, input[i]);
+		}
+		this.input = Arrays.copyOf(input, input.length);
+		undoDepth = 0;
+	}
+	
+	public double getFeature(int feature) {
+		requireReset();
+		return input[feature];
+	}
+	
+	public void setFeature(int feature, double value) {
+		requireReset();
+		Requirements.nonNegative(feature, "feature");
+		Requirements.smallerThan(feature, input.length, "feature");
+		
+		if (undoDepth == undoFeatures.length) {
+			undoFeatures = Arrays.copyOf(undoFeatures, undoDepth * 2);
+			undoValues = Arrays.copyOf(undoValues, undoDepth * 2);
+		}
+		undoFeatures[undoDepth] = feature;
+		undoValues[undoDepth] = input[feature];
+		undoDepth++;
+		
+		addFeature(feature, value - input[feature]);
+		input[feature] = value;
+	}
+	
+	public void activate(int feature) {
+		setFeature(feature, 1);
+	}
+	
+	public void deactivate(int feature) {
+		setFeature(feature, 0);
+	}
+	
+	
+	/**
+	 * Returns the amount of changes that can be undone. Passing the returned value to {@link #undoTo(int)} later reverts every change made in the meantime.
+	 */
+	public int getUndoDepth() {
+		return undoDepth;
+	}
+	
+	public void undo() {
+		Requirements.positive(undoDepth, "undo depth");
+		
+		undoDepth--;
+		int feature = undoFeatures[undoDepth];
+		addFeature(feature, undoValues[undoDepth] - input[feature]);
+		input[feature] = undoValues[undoDepth];
+	}
+	
+	public void undoTo(int depth) {
+		Requirements.nonNegative(depth, "depth");
+		Requirements.smallerOrEqual(depth, undoDepth, "depth");
+		
+		while (undoDepth > depth) {
+			undo();
+		}
+	}
+	
+	
+	public OutputSet evaluate() {
+		requireReset();
+		
+		int layerCount = state.getLayerCount();
+		LayerOutputSet firstLayer = network.getLayerActivationFunction(0, state).apply(new UnactivatedLayerOutputSet(accumulator));
+		if (layerCount == 1) return new OutputSet(firstLayer);
+		
+		NeuralNetworkLayerResult[] results = network.processLayers(new LayerInputSet(firstLayer), 1, layerCount, state);
+		return new OutputSet(results[results.length - 1].getLayerOutput());
+	}
+	
+	/**
+	 * Evaluates the input with a single feature changed, then reverts the change.
+	 */
+	public OutputSet evaluateWith(int feature, double value) {
+		setFeature(feature, value);
+		try {
+			return evaluate();
+		} finally {
+			undo();
+		}
+	}
+	
+	
+	private void addFeature(int feature, double delta) {
+		if (delta == 0) return;
+		
+		INDArray row = firstLayerWeights.getRow(feature + 1);
+		if (delta == 1) accumulator.addi(row);
+		else if (delta == -1) accumulator.subi(row);
+		else accumulator.addi(row.mul(delta));
+	}
+	
+	private void requireReset() {
+		Requirements.throwErrorIf(input == null, Requirements.FormatStrings.mustNotBe, "evaluator", "used before being reset");
+	}
+
+}
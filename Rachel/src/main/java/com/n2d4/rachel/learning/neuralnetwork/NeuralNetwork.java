@@ -1,5 +1,9 @@
 package com.n2d4.rachel.learning.neuralnetwork;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -7,17 +11,22 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import com.n2d4.rachel.learning.ActivationFunction;
 import com.n2d4.rachel.learning.CostFunction;
+import com.n2d4.rachel.learning.ElementwiseCostFunction;
 import com.n2d4.rachel.learning.OptimizationFunction;
 import com.n2d4.rachel.learning.SupervisedLearner;
+import com.n2d4.rachel.learning.TrainingMetrics;
 import com.n2d4.rachel.learning.WeightApplyFunction;
 import com.n2d4.rachel.util.DebugStringBuilder;
 import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.util.Util;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
 import com.n2d4.rachel.vectorization.BiasLackingLayerWeights;
 import com.n2d4.rachel.vectorization.CostSet;
 import com.n2d4.rachel.vectorization.DataSet;
 import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.LayerInputError;
 import com.n2d4.rachel.vectorization.LayerInputSet;
+import com.n2d4.rachel.vectorization.LayerOutputSet;
 import com.n2d4.rachel.vectorization.LayerWeights;
 import com.n2d4.rachel.vectorization.OutputSet;
 import com.n2d4.rachel.vectorization.SupervisedInOutSet;
@@ -26,7 +35,9 @@ import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
 import com.n2d4.rachel.vectorization.UnrolledBiasLackingParameters;
 import com.n2d4.rachel.vectorization.UnrolledParameters;
 import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.ActivationDerivative;
 import com.n2d4.rachel.vectorization.derivatives.Erroneousness;
+import com.n2d4.rachel.vectorization.derivatives.LayerCostDerivative;
 import com.n2d4.rachel.vectorization.derivatives.ParameterApplyDerivative;
 import com.n2d4.rachel.vectorization.derivatives.ParameterError;
 import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
@@ -37,6 +48,7 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 	public static final ActivationFunction DEFAULT_ACTIVATION_FUNCTION = ActivationFunction.SIGMOID;
 	
 	
+	private final ActivationFunction outputActivationFunction;
 	private final int[] layerSizes;
 	
 	public NeuralNetwork(DataSet dataSet, double learningRate, int... hiddenLayerSizes) {
@@ -55,14 +67,28 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 		this(costFunction, activationFunction, OptimizationFunction.GRADIENT_DESCENT(learningRate), dataSet, hiddenLayerSizes);
 	}
 	
+	public NeuralNetwork(CostFunction costFunction, ActivationFunction activationFunction, ActivationFunction outputActivationFunction, DataSet dataSet, double learningRate, int... hiddenLayerSizes) {
+		this(costFunction, activationFunction, outputActivationFunction, OptimizationFunction.GRADIENT_DESCENT(learningRate), WeightApplyFunction.MATRIX_MULT, dataSet, hiddenLayerSizes);
+	}
+	
 	public NeuralNetwork(CostFunction costFunction, ActivationFunction activationFunction, OptimizationFunction optimizationFunction, DataSet dataSet, int... hiddenLayerSizes) {
 		this(costFunction, activationFunction, optimizationFunction, WeightApplyFunction.MATRIX_MULT, dataSet, hiddenLayerSizes);
 	}
 
 	public NeuralNetwork(CostFunction costFunction, ActivationFunction activationFunction, OptimizationFunction optimizationFunction, WeightApplyFunction weightApplyFunction, DataSet dataSet, int... hiddenLayerSizes) {
+		this(costFunction, activationFunction, activationFunction, optimizationFunction, weightApplyFunction, dataSet, hiddenLayerSizes);
+	}
+
+	/**
+	 * @param activationFunction the activation function of the hidden layers, which must be {@link ActivationFunction#isElementwise() element-wise}
+	 * @param outputActivationFunction the activation function of the output layer
+	 */
+	public NeuralNetwork(CostFunction costFunction, ActivationFunction activationFunction, ActivationFunction outputActivationFunction, OptimizationFunction optimizationFunction, WeightApplyFunction weightApplyFunction, DataSet dataSet, int... hiddenLayerSizes) {
 		super(costFunction, activationFunction, optimizationFunction, weightApplyFunction, dataSet);
+		this.outputActivationFunction = Requirements.nonNull(outputActivationFunction, "output activation function");
 		
 		Requirements.nonNull(hiddenLayerSizes, "hidden layers");
+		Requirements.throwErrorIf(hiddenLayerSizes.length > 0 && !activationFunction.isElementwise(), Requirements.FormatStrings.mustBe, "hidden layer activation function", "element-wise");
 		layerSizes = new int[hiddenLayerSizes.length + 2];
 		layerSizes[0] = dataSet.getInputSize();
 		layerSizes[layerSizes.length - 1] = dataSet.getOutputSize();
@@ -75,6 +101,14 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 	
 
 	
+	public ActivationFunction getOutputActivationFunction() {
+		return outputActivationFunction;
+	}
+	
+	protected ActivationFunction getLayerActivationFunction(int layer, NeuralNetworkState state) {
+		return layer == state.getLayerCount() - 1 ? getOutputActivationFunction() : getActivationFunction();
+	}
+	
 	public LayerWeights[] getWeights() {
 		return getState().getWeights();
 	}
@@ -95,32 +129,74 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 	}
 	
 	protected UnrolledBiasLackingParameters getUnrolledBiasLackingParameters() {
-		BiasLackingLayerWeights[] weights = new BiasLackingLayerWeights[getLayerCount()];
+		return getUnrolledBiasLackingParameters(getState());
+	}
+	
+	protected UnrolledBiasLackingParameters getUnrolledBiasLackingParameters(NeuralNetworkState state) {
+		BiasLackingLayerWeights[] weights = new BiasLackingLayerWeights[state.getLayerCount()];
 		for (int i = 0; i < weights.length; i++) {
-			weights[i] = getLayerWeights(i).withoutBias();
+			weights[i] = state.getLayerWeights(i).withoutBias();
 		}
 		return new UnrolledBiasLackingParameters(weights);
 	}
 	
+	/**
+	 * Returns the bias-lacking parameters if the cost function {@link CostFunction#needsWeightDecayParameters() needs them}, null otherwise.
+	 */
+	protected UnrolledBiasLackingParameters getWeightDecayParameters(CostFunction function, NeuralNetworkState state) {
+		return function.needsWeightDecayParameters() ? getUnrolledBiasLackingParameters(state) : null;
+	}
+	
 	
 	
 	
 	protected NeuralNetworkLayerResult processLayer(LayerInputSet input, int layer) {
+		return processLayer(input, layer, getState());
+	}
+	
+	protected NeuralNetworkLayerResult processLayer(LayerInputSet input, int layer, NeuralNetworkState state) {
+		return processLayer(input, layer, state, false);
+	}
+	
+	/**
+	 * @param withDerivative whether to compute the activation derivative in the same pass as the activation, for use in backpropagation. Every call writes the derivative into a fresh buffer that the returned result keeps.
+	 */
+	protected NeuralNetworkLayerResult processLayer(LayerInputSet input, int layer, NeuralNetworkState state, boolean withDerivative) {
 		Requirements.nonNull(input, "input");
 		
-		UnactivatedLayerOutputSet unactivated = getWeightApplyFunction().getOutput(input, getLayerWeights(layer));
-		return new NeuralNetworkLayerResult(input, unactivated, getActivationFunction().apply(unactivated));
+		ActivationFunction activationFunction = getLayerActivationFunction(layer, state);
+		UnactivatedLayerOutputSet unactivated = getWeightApplyFunction().getOutput(input, state.getLayerWeights(layer));
+		if (!withDerivative || activationFunction.hasUnitDerivative() || !activationFunction.isElementwise()) {
+			return new NeuralNetworkLayerResult(input, unactivated, activationFunction.apply(unactivated));
+		}
+		
+		// Every pass gets its own buffer, as the result keeps it and passes may run concurrently on published states
+		INDArray buffer = Nd4j.create(VectorizedData.getINDArray(unactivated).shape());
+		LayerOutputSet output = activationFunction.apply(unactivated, buffer);
+		return new NeuralNetworkLayerResult(input, unactivated, output, new ActivationDerivative(buffer));
 	}
 	
 	protected NeuralNetworkLayerResult[] processLayers(LayerInputSet input, int startingLayer, int outputLayer) {
+		return processLayers(input, startingLayer, outputLayer, getState());
+	}
+	
+	protected NeuralNetworkLayerResult[] processLayers(LayerInputSet input, int startingLayer, int outputLayer, NeuralNetworkState state) {
+		return processLayers(input, startingLayer, outputLayer, state, false);
+	}
+	
+	protected NeuralNetworkLayerResult[] processLayers(LayerInputSet input, int startingLayer, int outputLayer, NeuralNetworkState state, boolean withDerivatives) {
 		Requirements.nonNull(input, "input");
 		Requirements.nonNegative(startingLayer, "starting layer");
 		Requirements.nonNegative(outputLayer, "output layer");
 		
+		// Only passes with derivatives belong to training; inference and serving are not timed as training
+		MetricsRegistry metrics = getMetrics();
 		NeuralNetworkLayerResult[] result = new NeuralNetworkLayerResult[outputLayer - startingLayer];
 		for (int i = 0; i < result.length; i++) {
-			result[i] = processLayer(input, startingLayer + i);
+			long started = withDerivatives ? metrics.start() : 0;
+			result[i] = processLayer(input, startingLayer + i, state, withDerivatives);
 			input = new LayerInputSet(result[i].getLayerOutput());
+			if (withDerivatives) metrics.stop(TrainingMetrics.FORWARD, startingLayer + i, started);
 		}
 		return result;
 	}
@@ -130,16 +206,26 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 	}
 	
 	public NeuralNetworkProcessResult processFullOutput(InputSet input) {
-		NeuralNetworkLayerResult[] out = processLayers(new LayerInputSet(input));
+		return processFullOutput(input, getState());
+	}
+	
+	public NeuralNetworkProcessResult processFullOutput(InputSet input, NeuralNetworkState state) {
+		return processFullOutput(input, state, false);
+	}
+	
+	protected NeuralNetworkProcessResult processFullOutput(InputSet input, NeuralNetworkState state, boolean withDerivatives) {
+		Requirements.nonNull(state, "state");
+		
+		NeuralNetworkLayerResult[] out = processLayers(new LayerInputSet(input), 0, state.getLayerCount(), state, withDerivatives);
 		return new NeuralNetworkProcessResult(out, new OutputSet(out[out.length - 1].getLayerOutput()));
 	}
 	
 	@Override
-	public OutputSet process(InputSet input) {
+	public OutputSet process(InputSet input, NeuralNetworkState state) {
 		Requirements.nonNull(input, "input set");
 		Requirements.equal(input.getInputCount(), getInputSize(), "input feature count");
 		
-		return processFullOutput(input).getOutput();
+		return processFullOutput(input, state).getOutput();
 	}
 
 	@Override
@@ -147,54 +233,153 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 		Requirements.nonNull(trainingSet, "training set");
 		
 		
-		NeuralNetworkProcessResult result = processFullOutput(trainingSet.getInputSet());
+		MetricsRegistry metrics = getMetrics();
+		ParameterError<?>[] weightErrors = getWeightErrors(trainingSet, getState());
+		
+		long started = metrics.start();
+		UnrolledParameters params = getUnrolledParameters();
+		UnrolledParameterErrors unrolledParamErrors = new UnrolledParameterErrors(weightErrors);
+		getState().setOptimizationData(getOptimizationFunction().step(getState().getOptimizationData(), params, unrolledParamErrors, getObjective(trainingSet)));
+		metrics.stop(TrainingMetrics.OPTIMIZER_STEP, started);
+		
+		started = metrics.start();
+		params.reshapeOriginals();
+		metrics.stop(TrainingMetrics.RESHAPE, started);
+	}
+	
+	@Override
+	public UnrolledParameterErrors getCostDerivative(SupervisedInOutSet set) {
+		return new UnrolledParameterErrors(getWeightErrors(set, getState()));
+	}
+	
+	/**
+	 * Computes the analytic derivative of the cost with respect to every layer's weights by backpropagation, without changing any weights.
+	 */
+	protected ParameterError<?>[] getWeightErrors(SupervisedInOutSet trainingSet, NeuralNetworkState state) {
+		Requirements.nonNull(trainingSet, "training set");
+		Requirements.nonNull(state, "state");
+		
+		int[] activeOutputs = getSingleActiveOutputs(trainingSet.getOutputSet());
+		if (activeOutputs != null) return getSingleOutputWeightErrors(trainingSet, state, activeOutputs);
+		
+		MetricsRegistry metrics = getMetrics();
+		NeuralNetworkProcessResult result = processFullOutput(trainingSet.getInputSet(), state, true);
+		
+		long started = metrics.start();
+		Erroneousness error = getCostFunction().getErroneousness(getWeightDecayParameters(getCostFunction(), state), trainingSet.getOutputSet(), result.getOutput(), getOutputActivationFunction(), result.getFinalLayer().getActivationDerivative());
+		metrics.stop(TrainingMetrics.COST, started);
 		
-		Erroneousness[] errors = new Erroneousness[getLayerCount()];
-		errors[errors.length - 1] = getCostFunction().getErroneousness(getUnrolledBiasLackingParameters(), trainingSet.getOutputSet(), result.getOutput(), result.getFinalLayer().getUnactivatedLayerOutput(), result.getFinalLayer().getLayerOutput(), getActivationFunction());
-		for (int i = errors.length - 2; i >= 0; i--) {
-			LayerInputSet layerInput = result.getLayerInputSet(i + 1);
-			ParameterApplyDerivative<LayerInputSet> inputError = getWeightApplyFunction().getInputDerivative(layerInput, getLayerWeights(i + 1));
-			errors[i] = errors[i + 1].chainInput(inputError).chain(layerInput.getLayerInputSetDerivative()).chain(getActivationFunction().getDerivative(result.getUnactivatedLayerOutputSet(i), result.getLayerOutputSet(i)));
+		ParameterError<?>[] weightErrors = new ParameterError<?>[state.getLayerCount()];
+		backpropagate(result.getLayerResults(), weightErrors.length - 1, error, weightErrors, state);
+		return weightErrors;
+	}
+	
+	/**
+	 * Returns the only active output of every set if the output set's mask has exactly one active output per set, as in Q-learning, and the network can take advantage of that. Returns null otherwise.
+	 */
+	private int[] getSingleActiveOutputs(OutputSet outputSet) {
+		if (!outputSet.hasMask()) return null;
+		if (!(getCostFunction() instanceof ElementwiseCostFunction) || !getOutputActivationFunction().isElementwise()) return null;
+		if (getWeightApplyFunction() != WeightApplyFunction.MATRIX_MULT && getWeightApplyFunction() != WeightApplyFunction.SPARSE_MATRIX_MULT) return null;
+		return outputSet.getMask().getSingleActiveOutputs();
+	}
+	
+	/**
+	 * Backpropagation for output sets in which only one output per set is active. Only the active output of every set is computed in the last layer, and only its error is propagated into the hidden layers; the last layer's weight derivative is accumulated as one rank-1 update per distinct active output. None of this depends on the output size.
+	 */
+	private ParameterError<?>[] getSingleOutputWeightErrors(SupervisedInOutSet trainingSet, NeuralNetworkState state, int[] activeOutputs) {
+		MetricsRegistry metrics = getMetrics();
+		int last = state.getLayerCount() - 1;
+		NeuralNetworkLayerResult[] layers = processLayers(new LayerInputSet(trainingSet.getInputSet()), 0, last, state, true);
+		
+		long started = metrics.start();
+		LayerInputSet lastInput = last == 0 ? new LayerInputSet(trainingSet.getInputSet()) : new LayerInputSet(layers[last - 1].getLayerOutput());
+		INDArray x = VectorizedData.getINDArray(lastInput);
+		INDArray w = VectorizedData.getINDArray(state.getLayerWeights(last));
+		INDArray activeWeights = w.getColumns(activeOutputs).transpose();
+		UnactivatedLayerOutputSet unactivated = new UnactivatedLayerOutputSet(x.mul(activeWeights).sum(1));
+		INDArray activationDerivative = getOutputActivationFunction().hasUnitDerivative() ? null : Nd4j.create(activeOutputs.length, 1);
+		LayerOutputSet output = getOutputActivationFunction().apply(unactivated, activationDerivative);
+		metrics.stop(TrainingMetrics.FORWARD, last, started);
+		
+		started = metrics.start();
+		INDArray expected = VectorizedData.getINDArray(trainingSet.getOutputSet());
+		INDArray activeExpected = Nd4j.create(activeOutputs.length, 1);
+		for (int i = 0; i < activeOutputs.length; i++) {
+			activeExpected.putScalar(i, 0, expected.getDouble(i, activeOutputs[i]));
 		}
+		Erroneousness error = getCostFunction().getErroneousness(getWeightDecayParameters(getCostFunction(), state), OutputSet.view(activeExpected), new OutputSet(output), getOutputActivationFunction(), activationDerivative == null ? null : new ActivationDerivative(activationDerivative));
+		INDArray delta = VectorizedData.getINDArray(error);
+		metrics.stop(TrainingMetrics.COST, started);
 		
-		ParameterError<?>[] weightErrors = new ParameterError<?>[errors.length];
-		for (int i = 0; i < weightErrors.length; i++) {
-			weightErrors[i] = errors[i].chain(getWeightApplyFunction().getWeightDerivative(result.getLayerInputSet(i), getLayerWeights(i)));
+		started = metrics.start();
+		ParameterError<?>[] weightErrors = new ParameterError<?>[state.getLayerCount()];
+		INDArray lastError = Nd4j.zeros(w.shape());
+		Map<Integer, List<Integer>> setsByOutput = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i < activeOutputs.length; i++) {
+			setsByOutput.computeIfAbsent(activeOutputs[i], k -> new ArrayList<Integer>()).add(i);
 		}
+		for (Map.Entry<Integer, List<Integer>> entry : setsByOutput.entrySet()) {
+			int[] sets = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+			lastError.putColumn(entry.getKey(), x.getRows(sets).transpose().mmul(delta.getRows(sets)));
+		}
+		weightErrors[last] = new ParameterError<LayerWeights>(lastError);
+		metrics.stop(TrainingMetrics.BACKWARD, last, started);
 		
-		UnrolledParameters params = getUnrolledParameters();
-		UnrolledParameterErrors unrolledParamErrors = new UnrolledParameterErrors(weightErrors);
-		getOptimizationFunction().step(getState().getOptimizationData(), params, unrolledParamErrors);
-		params.reshapeOriginals();
+		if (last > 0) {
+			LayerInputError inputError = new LayerInputError(activeWeights.muliColumnVector(delta));
+			backpropagate(layers, last - 1, getHiddenErroneousness(inputError, layers[last - 1], lastInput), weightErrors, state);
+		}
+		return weightErrors;
 	}
 	
+	/**
+	 * Propagates the erroneousness of the given layer back through it and every layer before it, storing every layer's weight derivative in {@code weightErrors}.
+	 */
+	private void backpropagate(NeuralNetworkLayerResult[] layers, int layer, Erroneousness error, ParameterError<?>[] weightErrors, NeuralNetworkState state) {
+		MetricsRegistry metrics = getMetrics();
+		for (int i = layer; i >= 0; i--) {
+			long started = metrics.start();
+			if (i < layer) {
+				LayerInputSet layerInput = layers[i + 1].getLayerInput();
+				ParameterApplyDerivative<LayerInputSet> inputDerivative = getWeightApplyFunction().getInputDerivative(layerInput, state.getLayerWeights(i + 1));
+				error = getHiddenErroneousness(error.chainInput(inputDerivative), layers[i], layerInput);
+			}
+			weightErrors[i] = error.chain(getWeightApplyFunction().getWeightDerivative(layers[i].getLayerInput(), state.getLayerWeights(i)));
+			metrics.stop(TrainingMetrics.BACKWARD, i, started);
+		}
+	}
 	
+	private Erroneousness getHiddenErroneousness(LayerInputError inputError, NeuralNetworkLayerResult layer, LayerInputSet nextLayerInput) {
+		LayerCostDerivative layerError = inputError.chain(nextLayerInput.getLayerInputSetDerivative());
+		return getActivationFunction().hasUnitDerivative() ? new Erroneousness(VectorizedData.getINDArray(layerError)) : layerError.chain(layer.getActivationDerivative());
+	}
+	
+	
+	/**
+	 * Numerically approximates the derivative of the cost with respect to every weight of the given layer. Weights are perturbed in place on a single copy of the current state.
+	 * 
+	 * @see GradientChecker
+	 */
 	protected ParameterError<LayerWeights> checkDerivatives(TrainingSet trainingSet, int layer) {
-		final double epsilon = 0.0001;
-		NeuralNetworkState initial = getState();
+		final double epsilon = GradientChecker.DEFAULT_EPSILON;
+		NeuralNetworkState copy = new NeuralNetworkState(getState());
+		INDArray arr = VectorizedData.getINDArray(copy.getLayerWeights(layer));
 		
-		int[] shape = VectorizedData.getINDArray(getLayerWeights(layer)).shape();
+		int[] shape = arr.shape();
 		ParameterError<LayerWeights> result = new ParameterError<LayerWeights>(Nd4j.create(shape));
 		INDArray resarr = VectorizedData.getINDArray(result);
 		int[] cur = Util.elementWiseLoopInit(shape.length);
 		while (Util.elementWiseIncrement(cur, shape)) {
-			double res = 0;
-			for (int i = -1; i <= 1; i += 2) {
-				restoreState(new NeuralNetworkState(initial));
-				INDArray arr = VectorizedData.getINDArray(getState().getLayerWeights(layer));
-				arr.putScalar(cur, arr.getDouble(cur) + (epsilon * i));
-				res += i * VectorizedData.getINDArray(getCost(trainingSet)).sumNumber().doubleValue();
-			}
-			resarr.putScalar(cur, res / (2 * epsilon));
+			resarr.putScalar(cur, GradientChecker.getNumericDerivative(this, trainingSet, copy, arr, cur[0], cur[1], epsilon));
 		}
 		
-		restoreState(initial);
 		return result;
 	}
 
 	@Override
-	protected CostSet getCost(CostFunction function, SupervisedInOutSet set, OutputSet actualOutput) {
-		return function.getCost(getUnrolledBiasLackingParameters(), set.getOutputSet(), actualOutput);
+	protected CostSet getCost(CostFunction function, SupervisedInOutSet set, OutputSet actualOutput, NeuralNetworkState state) {
+		return function.getCost(getWeightDecayParameters(function, state), set.getOutputSet(), actualOutput);
 	}
 
 	@Override
@@ -202,15 +387,31 @@ public class NeuralNetwork extends SupervisedLearner<NeuralNetworkState> {
 		return new NeuralNetworkState(layerSizes, new Random(seed));
 	}
 	
+	@Override
+	protected NeuralNetworkState copyState(NeuralNetworkState state) {
+		return new NeuralNetworkState(state);
+	}
+	
+	@Override
+	protected NeuralNetworkState copyStateForPublishing(NeuralNetworkState state) {
+		return NeuralNetworkState.packedCopyOf(state);
+	}
+	
 
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getWeights()", getWeights()).add("getLayerCount()", getLayerCount())
 				.add("getCostFunction()", getCostFunction()).add("getActivationFunction()", getActivationFunction())
+				.add("getOutputActivationFunction()", getOutputActivationFunction())
 				.add("getOptimizationFunction()", getOptimizationFunction())
 				.add("getWeightApplyFunction()", getWeightApplyFunction()).add("getDataSet()", getDataSet());
-		return builder.toString();
+		return builder;
 	}
 
 }
@@ -5,17 +5,24 @@ import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
 import com.n2d4.rachel.vectorization.LayerInputSet;
 import com.n2d4.rachel.vectorization.LayerOutputSet;
 import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
+import com.n2d4.rachel.vectorization.derivatives.ActivationDerivative;
 
 public final class NeuralNetworkLayerResult implements Debuggable {
 
 	private final LayerInputSet layerInput;
 	private final UnactivatedLayerOutputSet unactivatedLayerOutput;
 	private final LayerOutputSet layerOutput;
+	private final ActivationDerivative activationDerivative;
 
 	NeuralNetworkLayerResult(LayerInputSet layerInput, UnactivatedLayerOutputSet unactivatedLayerOutput, LayerOutputSet layerOutput) {
+		this(layerInput, unactivatedLayerOutput, layerOutput, null);
+	}
+
+	NeuralNetworkLayerResult(LayerInputSet layerInput, UnactivatedLayerOutputSet unactivatedLayerOutput, LayerOutputSet layerOutput, ActivationDerivative activationDerivative) {
 		this.layerInput = layerInput;
 		this.unactivatedLayerOutput = unactivatedLayerOutput;
 		this.layerOutput = layerOutput;
+		this.activationDerivative = activationDerivative;
 	}
 
 	public LayerInputSet getLayerInput() {
@@ -29,13 +36,25 @@ public final class NeuralNetworkLayerResult implements Debuggable {
 	public LayerOutputSet getLayerOutput() {
 		return layerOutput;
 	}
+
+	/**
+	 * Returns the activation derivative computed during the forward pass, or null if it was not requested or the activation function has a unit derivative.
+	 */
+	public ActivationDerivative getActivationDerivative() {
+		return activationDerivative;
+	}
 	
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getLayerInput()", getLayerInput()).add("getUnactivatedLayerOutput()", getUnactivatedLayerOutput())
 				.add("getLayerOutput()", getLayerOutput());
-		return builder.toString();
+		return builder;
 	}
 
 }
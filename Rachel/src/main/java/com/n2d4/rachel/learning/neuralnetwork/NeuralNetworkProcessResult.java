@@ -51,10 +51,15 @@ public final class NeuralNetworkProcessResult implements Debuggable {
 
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getOutput()", getOutput()).add("getLayerResults()", getLayerResults()).add("getLayerCount()",
 				getLayerCount());
-		return builder.toString();
+		return builder;
 	}
 	
 	
@@ -0,0 +1,278 @@
+package com.n2d4.rachel.learning.neuralnetwork;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import com.n2d4.rachel.learning.ActivationFunction;
+import com.n2d4.rachel.learning.ElementwiseCostFunction;
+import com.n2d4.rachel.learning.TrainingMetrics;
+import com.n2d4.rachel.learning.WeightApplyFunction;
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
+import com.n2d4.rachel.vectorization.LayerOutputSet;
+import com.n2d4.rachel.vectorization.LayerWeights;
+import com.n2d4.rachel.vectorization.OutputSet;
+import com.n2d4.rachel.vectorization.SupervisedInOutSet;
+import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.derivatives.ActivationDerivative;
+import com.n2d4.rachel.vectorization.derivatives.ParameterError;
+import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
+
+/**
+ * Trains several networks of the same topology together, as in seed ensembles and sweeps, computing each layer for all of them at once.
+ * <p>
+ * The networks stay independent and can be used on their own at any time. They must have the same layer sizes and functions, use {@link WeightApplyFunction#MATRIX_MULT}, element-wise activation functions, an {@link ElementwiseCostFunction}, no weight decay and optimization functions that do not {@link com.n2d4.rachel.learning.OptimizationFunction#needsObjective() need an objective}.
+ */
+public class NeuralNetworkStack implements Debuggable {
+	
+	private final NeuralNetwork[] networks;
+	private final int[] layerSizes;
+	private final MetricsRegistry metrics = new MetricsRegistry(false);
+	
+	public NeuralNetworkStack(NeuralNetwork... networks) {
+		Requirements.nonNull(networks, "networks");
+		Requirements.positive(networks.length, "network count");
+		this.networks = networks.clone();
+		
+		NeuralNetwork first = Requirements.nonNull(networks[0], "network");
+		NeuralNetworkState state = first.getState();
+		this.layerSizes = new int[state.getLayerCount() + 1];
+		layerSizes[0] = state.getLayerInputSize(0);
+		for (int i = 0; i < state.getLayerCount(); i++) {
+			layerSizes[i + 1] = state.getLayerOutputSize(i);
+		}
+		
+		Requirements.throwErrorIf(first.getWeightApplyFunction() != WeightApplyFunction.MATRIX_MULT, Requirements.FormatStrings.mustBe, "weight apply function", "matrix multiplication");
+		Requirements.throwErrorIf(!first.getActivationFunction().isElementwise() || !first.getOutputActivationFunction().isElementwise(), Requirements.FormatStrings.mustBe, "activation functions", "element-wise");
+		Requirements.throwErrorIf(!(first.getCostFunction() instanceof ElementwiseCostFunction) || first.getCostFunction().needsWeightDecayParameters(), Requirements.FormatStrings.mustBe, "cost function", "element-wise without weight decay");
+		for (NeuralNetwork network : networks) {
+			Requirements.nonNull(network, "network");
+			Requirements.equal(network.getLayerCount(), state.getLayerCount(), "layer count");
+			for (int i = 0; i < state.getLayerCount(); i++) {
+				Requirements.equal(network.getState().getLayerInputSize(i), layerSizes[i], "layer input size");
+				Requirements.equal(network.getState().getLayerOutputSize(i), layerSizes[i + 1], "layer output size");
+			}
+			network.requireObjectiveFreeOptimization();
+			Requirements.throwErrorIf(network.getWeightApplyFunction() != first.getWeightApplyFunction() || network.getActivationFunction() != first.getActivationFunction()
+					|| network.getOutputActivationFunction() != first.getOutputActivationFunction() || network.getCostFunction() != first.getCostFunction(),
+					Requirements.FormatStrings.mustBe, "functions of every network", "the same");
+		}
+	}
+	
+	
+	public int getNetworkCount() {
+		return networks.length;
+	}
+	
+	public NeuralNetwork getNetwork(int index) {
+		return networks[index];
+	}
+	
+	public NeuralNetwork[] getNetworks() {
+		return networks.clone();
+	}
+	
+	/**
+	 * Returns the registry the stack records its {@link TrainingMetrics training metrics} into; samples are counted once per network. It is disabled by default.
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+	
+	public double getSamplesPerSecond() {
+		return metrics.getRate(TrainingMetrics.SAMPLES);
+	}
+	
+	
+	
+	/**
+	 * Trains every network for one step on the same randomized batch of the first network's training set.
+	 */
+	public void train(int batchSize) {
+		train(networks[0].getDataSet().getTrainingSet().getRandomizedBatch(batchSize));
+	}
+	
+	/**
+	 * Trains every network for one step on a randomized batch of its own training set.
+	 */
+	public void trainOnOwnBatches(int batchSize) {
+		SupervisedInOutSet[] batches = new SupervisedInOutSet[networks.length];
+		for (int i = 0; i < batches.length; i++) {
+			batches[i] = networks[i].getDataSet().getTrainingSet().getRandomizedBatch(batchSize);
+		}
+		train(batches);
+	}
+	
+	/**
+	 * Trains every network for one step on the given batch.
+	 */
+	public void train(SupervisedInOutSet batch) {
+		SupervisedInOutSet[] batches = new SupervisedInOutSet[networks.length];
+		for (int i = 0; i < batches.length; i++) {
+			batches[i] = batch;
+		}
+		train(batches);
+	}
+	
+	/**
+	 * Trains the {@code i}th network for one step on the {@code i}th batch. All batches must have the same size.
+	 */
+	public void train(SupervisedInOutSet[] batches) {
+		Requirements.nonNull(batches, "batches");
+		Requirements.equal(batches.length, networks.length, "batch count");
+		boolean shared = true;
+		for (SupervisedInOutSet batch : batches) {
+			Requirements.nonNull(batch, "batch");
+			Requirements.equal(batch.getSize(), batches[0].getSize(), "batch size");
+			Requirements.equal(batch.getInputSet().getInputCount(), layerSizes[0], "input size");
+			Requirements.equal(batch.getOutputSet().getOutputCount(), layerSizes[layerSizes.length - 1], "output size");
+			Requirements.throwErrorIf(batch.getOutputSet().hasMask(), Requirements.FormatStrings.mustNotBe, "output set", "masked");
+			shared &= batch == batches[0];
+		}
+		
+		long started = metrics.start();
+		UnrolledParameterErrors[] derivatives = getCostDerivatives(batches, shared);
+		for (int i = 0; i < networks.length; i++) {
+			networks[i].train(derivatives[i]);
+		}
+		
+		if (started != 0) {
+			metrics.stop(TrainingMetrics.STEP, started);
+			metrics.increment(TrainingMetrics.SAMPLES, (long) batches[0].getSize() * networks.length);
+			metrics.increment(TrainingMetrics.STEPS, 1);
+		}
+	}
+	
+	
+	/**
+	 * Runs the forward and backward pass of all networks side by side. Column block {@code i} of every stacked matrix belongs to the {@code i}th network.
+	 */
+	private UnrolledParameterErrors[] getCostDerivatives(SupervisedInOutSet[] batches, boolean shared) {
+		int count = networks.length;
+		int layerCount = layerSizes.length - 1;
+		int setCount = batches[0].getSize();
+		INDArray[] inputs = new INDArray[count];
+		INDArray[] expected = new INDArray[count];
+		for (int i = 0; i < count; i++) {
+			inputs[i] = VectorizedData.getINDArray(batches[i].getInputSet());
+			expected[i] = VectorizedData.getINDArray(batches[i].getOutputSet());
+		}
+		
+		INDArray[][] weights = new INDArray[count][layerCount];
+		for (int i = 0; i < count; i++) {
+			for (int l = 0; l < layerCount; l++) {
+				weights[i][l] = VectorizedData.getINDArray(networks[i].getState().getLayerWeights(l));
+			}
+		}
+		
+		INDArray[] outputs = new INDArray[layerCount];
+		INDArray[] activationDerivatives = new INDArray[layerCount];
+		for (int l = 0; l < layerCount; l++) {
+			long started = metrics.start();
+			int in = layerSizes[l];
+			int out = layerSizes[l + 1];
+			INDArray unactivated;
+			INDArray biases = Nd4j.create(1, count * out);
+			if (l == 0 && shared) {
+				INDArray stacked = Nd4j.create(in, count * out);
+				for (int i = 0; i < count; i++) {
+					stacked.get(NDArrayIndex.all(), block(i, out)).assign(withoutBias(weights[i][l]));
+					biases.get(NDArrayIndex.all(), block(i, out)).assign(weights[i][l].getRow(0));
+				}
+				unactivated = inputs[0].mmul(stacked);
+			} else {
+				unactivated = Nd4j.create(setCount, count * out);
+				for (int i = 0; i < count; i++) {
+					INDArray input = l == 0 ? inputs[i] : outputs[l - 1].get(NDArrayIndex.all(), block(i, in));
+					unactivated.get(NDArrayIndex.all(), block(i, out)).assign(input.mmul(withoutBias(weights[i][l])));
+					biases.get(NDArrayIndex.all(), block(i, out)).assign(weights[i][l].getRow(0));
+				}
+			}
+			unactivated.addiRowVector(biases);
+			
+			ActivationFunction activationFunction = networks[0].getLayerActivationFunction(l, networks[0].getState());
+			activationDerivatives[l] = activationFunction.hasUnitDerivative() ? null : Nd4j.create(setCount, count * out);
+			outputs[l] = VectorizedData.getINDArray(activationFunction.apply(new UnactivatedLayerOutputSet(unactivated), activationDerivatives[l]));
+			metrics.stop(TrainingMetrics.FORWARD, l, started);
+		}
+		
+		long started = metrics.start();
+		int last = layerCount - 1;
+		OutputSet expectedOutput = OutputSet.view(Nd4j.hstack(expected));
+		OutputSet actualOutput = new OutputSet(new LayerOutputSet(outputs[last]));
+		ActivationDerivative outputDerivative = activationDerivatives[last] == null ? null : new ActivationDerivative(activationDerivatives[last]);
+		INDArray delta = VectorizedData.getINDArray(networks[0].getCostFunction().getErroneousness(null, expectedOutput, actualOutput, networks[0].getOutputActivationFunction(), outputDerivative));
+		metrics.stop(TrainingMetrics.COST, started);
+		
+		INDArray[][] errors = new INDArray[count][layerCount];
+		for (int l = last; l >= 0; l--) {
+			started = metrics.start();
+			int in = layerSizes[l];
+			int out = layerSizes[l + 1];
+			INDArray biasErrors = delta.sum(0);
+			INDArray sharedErrors = l == 0 && shared ? inputs[0].transpose().mmul(delta) : null;
+			INDArray previousDelta = l > 0 ? Nd4j.create(setCount, count * in) : null;
+			for (int i = 0; i < count; i++) {
+				INDArray blockDelta = delta.get(NDArrayIndex.all(), block(i, out));
+				INDArray error = Nd4j.create(in + 1, out);
+				error.getRow(0).assign(biasErrors.get(NDArrayIndex.all(), block(i, out)));
+				if (sharedErrors != null) {
+					withoutBias(error).assign(sharedErrors.get(NDArrayIndex.all(), block(i, out)));
+				} else {
+					INDArray input = l == 0 ? inputs[i] : outputs[l - 1].get(NDArrayIndex.all(), block(i, in));
+					withoutBias(error).assign(input.transpose().mmul(blockDelta));
+				}
+				errors[i][l] = error;
+				
+				if (previousDelta != null) previousDelta.get(NDArrayIndex.all(), block(i, in)).assign(blockDelta.mmul(withoutBias(weights[i][l]).transpose()));
+			}
+			if (previousDelta != null) {
+				delta = previousDelta;
+				if (activationDerivatives[l - 1] != null) delta.muli(activationDerivatives[l - 1]);
+			}
+			metrics.stop(TrainingMetrics.BACKWARD, l, started);
+		}
+		
+		UnrolledParameterErrors[] result = new UnrolledParameterErrors[count];
+		for (int i = 0; i < count; i++) {
+			ParameterError<?>[] layerErrors = new ParameterError<?>[layerCount];
+			for (int l = 0; l < layerCount; l++) {
+				layerErrors[l] = new ParameterError<LayerWeights>(errors[i][l]);
+			}
+			result[i] = new UnrolledParameterErrors(layerErrors);
+		}
+		return result;
+	}
+	
+	private static INDArrayIndex block(int index, int size) {
+		return NDArrayIndex.interval(index * size, (index + 1) * size);
+	}
+	
+	/**
+	 * Returns a view of the given layer-shaped matrix without its leading bias row.
+	 */
+	private static INDArray withoutBias(INDArray layer) {
+		return layer.get(NDArrayIndex.interval(1, layer.rows()), NDArrayIndex.all());
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getNetworkCount()", getNetworkCount()).add("getNetwork(0)", getNetwork(0))
+				.add("getMetrics()", getMetrics());
+		return builder;
+	}
+
+}
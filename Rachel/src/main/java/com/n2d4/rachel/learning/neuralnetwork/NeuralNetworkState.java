@@ -2,6 +2,10 @@ package com.n2d4.rachel.learning.neuralnetwork;
 
 import java.util.Random;
 
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
 import com.n2d4.rachel.learning.ExperimentState;
 import com.n2d4.rachel.util.DebugStringBuilder;
 import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
@@ -24,6 +28,42 @@ public class NeuralNetworkState extends ExperimentState implements Debuggable {
 		}
 	}
 
+	private NeuralNetworkState(NeuralNetworkState from, DataBuffer buffer) {
+		super(from, false);
+		
+		LayerWeights[] toCopy = from.getWeights();
+		layerWeights = new LayerWeights[toCopy.length];
+		int offset = 0;
+		for (int i = 0; i < layerWeights.length; i++) {
+			INDArray source = VectorizedData.getINDArray(toCopy[i]);
+			int[] shape = {source.rows(), source.columns()};
+			INDArray target = Nd4j.create(buffer, shape, new int[] {shape[1], 1}, offset);
+			target.assign(source);
+			layerWeights[i] = new LayerWeights(target);
+			offset += source.length();
+		}
+	}
+	
+	/**
+	 * Returns a copy of the given state's weights for processing only, without its optimization data. All layers are views into a single buffer, so the copy costs one allocation.
+	 */
+	public static NeuralNetworkState packedCopyOf(NeuralNetworkState from) {
+		Requirements.nonNull(from, "state to clone");
+		
+		int length = 0;
+		for (LayerWeights weights : from.getWeights()) {
+			length += VectorizedData.getINDArray(weights).length();
+		}
+		return new NeuralNetworkState(from, Nd4j.createBuffer(length));
+	}
+
+	/**
+	 * Creates a state with the given weights, which are not copied.
+	 */
+	public NeuralNetworkState(LayerWeights... layerWeights) {
+		this.layerWeights = Requirements.nonEmpty(Requirements.nonNull(layerWeights, "layer weights"), "layer weights").clone();
+	}
+
 	public NeuralNetworkState(int[] layerSizes, Random random) {
 		Requirements.nonNull(layerSizes, "layer sizes");		// TODO: Merge requirements when .nonEmpty is fixed for primitive values
 		Requirements.positive(layerSizes.length, "layer sizes length");
@@ -60,10 +100,15 @@ public class NeuralNetworkState extends ExperimentState implements Debuggable {
 
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getWeights()", getWeights()).add("getLayerCount()", getLayerCount())
 				.add("getIterationCount()", getIterationCount()).add("getOptimizationData()", getOptimizationData());
-		return builder.toString();
+		return builder;
 	}
 	
 	
@@ -43,5 +43,13 @@ public class NeuralQTable implements QTable<double[], Integer> {
 	public NeuralNetwork getNetwork() {
 		return network;
 	}
+	
+	public OnlineDataSet getDataSet() {
+		return dataSet;
+	}
+	
+	public int getTrainEvery() {
+		return trainEvery;
+	}
 
 }
@@ -0,0 +1,277 @@
+package com.n2d4.rachel.learning.qlearning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
+import com.n2d4.rachel.vectorization.OnlineDataSet;
+
+/**
+ * The learner of a distributed Q-learning setup. {@link RemoteQTable Actors} stream their values over TCP; the server trains the {@link NeuralQTable}'s network on them and broadcasts the weights every {@link #getBroadcastEvery()} steps.
+ */
+public class QLearnerServer implements Closeable, Debuggable {
+	
+	public static final int DEFAULT_BROADCAST_EVERY = 10;
+	
+	public static final String TRANSITIONS = "qlearning.transitions";
+	public static final String STEPS = "qlearning.steps";
+	public static final String BROADCASTS = "qlearning.broadcasts";
+	public static final String ACCEPT_FAILURES = "qlearning.acceptFailures";
+	
+	private final NeuralQTable table;
+	private final int broadcastEvery;
+	private final ServerSocket serverSocket;
+	private final List<ActorConnection> actors = new CopyOnWriteArrayList<ActorConnection>();
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final Thread acceptor;
+	private final Thread trainer;
+	private volatile byte[] latestWeights;
+	private volatile boolean running = true;
+	private volatile RuntimeException failure;
+	
+	/**
+	 * Listens on the given port of the loopback address; 0 picks a free port.
+	 */
+	public QLearnerServer(NeuralQTable table, int port) {
+		this(table, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), DEFAULT_BROADCAST_EVERY);
+	}
+	
+	public QLearnerServer(NeuralQTable table, InetSocketAddress address, int broadcastEvery) {
+		this.table = Requirements.nonNull(table, "table");
+		Requirements.nonNull(address, "address");
+		this.broadcastEvery = Requirements.positive(broadcastEvery, "broadcast interval");
+		
+		try {
+			this.serverSocket = new ServerSocket();
+			serverSocket.bind(address);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.latestWeights = QLearningProtocol.encodeWeights(0, table.getNetwork().getState());
+		
+		this.acceptor = newThread(this::acceptActors, "Q-learner acceptor");
+		this.trainer = newThread(this::train, "Q-learner trainer");
+		acceptor.start();
+		trainer.start();
+	}
+	
+	
+	public NeuralQTable getTable() {
+		return table;
+	}
+	
+	public int getBroadcastEvery() {
+		return broadcastEvery;
+	}
+	
+	public InetSocketAddress getAddress() {
+		return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+	}
+	
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+	
+	public int getActorCount() {
+		return actors.size();
+	}
+	
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Returns the exception that stopped the training thread, or null if it is still running or was closed.
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Returns the amount of values received from all actors per second.
+	 */
+	public double getTransitionRate() {
+		return metrics.getRate(TRANSITIONS);
+	}
+	
+	@Override
+	public void close() {
+		running = false;
+		trainer.interrupt();
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+		for (ActorConnection actor : actors) {
+			actor.close();
+		}
+	}
+	
+	
+	private void acceptActors() {
+		while (running) {
+			try {
+				ActorConnection actor = new ActorConnection(serverSocket.accept());
+				actors.add(actor);
+				actor.start();
+			} catch (IOException e) {
+				if (running) metrics.increment(ACCEPT_FAILURES, 1);
+			}
+		}
+	}
+	
+	private void train() {
+		try {
+			trainContinuously();
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+	}
+	
+	private void trainContinuously() {
+		NeuralNetwork network = table.getNetwork();
+		OnlineDataSet dataSet = table.getDataSet();
+		int trainEvery = table.getTrainEvery();
+		long trained = 0;
+		int steps = 0;
+		while (running) {
+			long added = dataSet.getAddedCount();
+			if (added < dataSet.getSetCount() || added - trained < trainEvery) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+				continue;
+			}
+			trained = Math.max(trained + trainEvery, added - dataSet.getSetCount());
+			
+			network.train();
+			metrics.increment(STEPS, 1);
+			if (++steps % broadcastEvery == 0) {
+				byte[] message = QLearningProtocol.encodeWeights(steps, network.getState());
+				latestWeights = message;
+				for (ActorConnection actor : actors) {
+					actor.send(message);
+				}
+				metrics.increment(BROADCASTS, 1);
+			}
+		}
+	}
+	
+	private static Thread newThread(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getAddress()", getAddress()).add("getActorCount()", getActorCount())
+				.add("getBroadcastEvery()", getBroadcastEvery()).add("getMetrics()", getMetrics()).add("getFailure()", getFailure());
+		return builder;
+	}
+	
+	
+	
+	private class ActorConnection {
+		
+		private final Socket socket;
+		private final BlockingQueue<byte[]> outbox = new ArrayBlockingQueue<byte[]>(1);
+		private final Thread receiver;
+		private final Thread sender;
+		
+		public ActorConnection(Socket socket) throws IOException {
+			this.socket = socket;
+			socket.setTcpNoDelay(true);
+			this.receiver = newThread(this::receive, "Q-learner receiver");
+			this.sender = newThread(this::sendWeights, "Q-learner sender");
+		}
+		
+		public void start() {
+			send(latestWeights);
+			receiver.start();
+			sender.start();
+		}
+		
+		/**
+		 * Replaces any weights that were not sent yet.
+		 */
+		public void send(byte[] message) {
+			outbox.clear();
+			outbox.offer(message);
+		}
+		
+		public void close() {
+			actors.remove(this);
+			sender.interrupt();
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Closing anyway
+			}
+		}
+		
+		private void receive() {
+			OnlineDataSet dataSet = table.getDataSet();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+				if (in.readInt() != QLearningProtocol.MAGIC) throw new IOException("Not a Q-learning actor");
+				int inputSize = in.readInt();
+				if (inputSize != dataSet.getInputSize()) throw new IOException("Actor input size " + inputSize + " does not match " + dataSet.getInputSize());
+				
+				double[] state = new double[inputSize];
+				while (running) {
+					byte type = in.readByte();
+					if (type != QLearningProtocol.TRANSITION) throw new IOException("Unexpected message type " + type);
+					int action = in.readInt();
+					double value = in.readDouble();
+					QLearningProtocol.readState(in, state);
+					dataSet.add(state, action, value);
+					metrics.increment(TRANSITIONS, 1);
+				}
+			} catch (IOException e) {
+				// The actor disconnected
+			} finally {
+				close();
+			}
+		}
+		
+		private void sendWeights() {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+				while (running) {
+					out.write(outbox.take());
+					out.flush();
+				}
+			} catch (IOException | InterruptedException e) {
+				// The actor disconnected or the server was closed
+			} finally {
+				close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.n2d4.rachel.learning.qlearning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetworkState;
+import com.n2d4.rachel.util.Exceptions;
+import com.n2d4.rachel.vectorization.LayerWeights;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * The wire format between {@link RemoteQTable actors} and a {@link QLearnerServer learner}. Weights and states are sent as floats.
+ */
+final class QLearningProtocol {
+	
+	static final int MAGIC = 0x51_4C_52_4E;
+	static final byte TRANSITION = 1;
+	static final byte WEIGHTS = 2;
+	
+	private QLearningProtocol() {
+		Exceptions.privateConstructor();
+	}
+	
+	
+	static void writeTransition(DataOutputStream out, double[] state, int action, double value) throws IOException {
+		out.writeByte(TRANSITION);
+		out.writeInt(action);
+		out.writeDouble(value);
+		for (double d : state) {
+			out.writeFloat((float) d);
+		}
+	}
+	
+	static void readState(DataInputStream in, double[] state) throws IOException {
+		for (int i = 0; i < state.length; i++) {
+			state[i] = in.readFloat();
+		}
+	}
+	
+	/**
+	 * Encodes a whole {@link #WEIGHTS} message once, so it can be sent to every actor without encoding it again.
+	 */
+	static byte[] encodeWeights(int version, NeuralNetworkState state) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(WEIGHTS);
+			out.writeInt(version);
+			out.writeInt(state.getLayerCount());
+			for (LayerWeights weights : state.getWeights()) {
+				INDArray arr = VectorizedData.getINDArray(weights);
+				out.writeInt(arr.rows());
+				out.writeInt(arr.columns());
+				for (int i = 0; i < arr.rows(); i++) {
+					for (int j = 0; j < arr.columns(); j++) {
+						out.writeFloat((float) arr.getDouble(i, j));
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new AssertionError(e);		// ByteArrayOutputStream never throws
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Reads the rest of a {@link #WEIGHTS} message whose type byte was already read, into a new state.
+	 */
+	static NeuralNetworkState readWeights(DataInputStream in) throws IOException {
+		in.readInt();		// version
+		LayerWeights[] layers = new LayerWeights[in.readInt()];
+		for (int l = 0; l < layers.length; l++) {
+			int rows = in.readInt();
+			int columns = in.readInt();
+			double[] values = new double[rows * columns];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = in.readFloat();
+			}
+			layers[l] = new LayerWeights(Nd4j.create(values, new int[] {rows, columns}));
+		}
+		return new NeuralNetworkState(layers);
+	}
+
+}
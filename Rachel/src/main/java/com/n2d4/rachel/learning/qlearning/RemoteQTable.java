@@ -0,0 +1,158 @@
+package com.n2d4.rachel.learning.qlearning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetworkState;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.OnlineDataSet;
+
+/**
+ * The actor side of a distributed {@link NeuralQTable}. Values are recalled from a local copy of the learner's network and sent to a {@link QLearnerServer}, {@link #getFlushEvery()} at a time.
+ */
+public class RemoteQTable implements QTable<double[], Integer>, Closeable {
+	
+	public static final int DEFAULT_FLUSH_EVERY = 64;
+	
+	private final Socket socket;
+	private final DataOutputStream out;
+	private final DataInputStream in;
+	private final NeuralNetwork network;
+	private final int flushEvery;
+	private final Thread receiver;
+	private volatile NeuralNetworkState policy;
+	private int unflushed = 0;
+	
+	public RemoteQTable(String host, int port) {
+		this(host, port, DEFAULT_FLUSH_EVERY);
+	}
+	
+	/**
+	 * Connects to the server and waits for its current weights.
+	 */
+	public RemoteQTable(String host, int port, int flushEvery) {
+		Requirements.nonNull(host, "host");
+		this.flushEvery = Requirements.positive(flushEvery, "flush interval");
+		
+		try {
+			this.socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.policy = readPolicy();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		int[] hiddenLayerSizes = new int[policy.getLayerCount() - 1];
+		for (int i = 0; i < hiddenLayerSizes.length; i++) {
+			hiddenLayerSizes[i] = policy.getLayerOutputSize(i);
+		}
+		int inputSize = policy.getLayerInputSize(0);
+		int outputCount = policy.getLayerOutputSize(policy.getLayerCount() - 1);
+		this.network = new NeuralNetwork(new OnlineDataSet(inputSize, outputCount, 1), 1, hiddenLayerSizes);
+		
+		synchronized (out) {
+			try {
+				out.writeInt(QLearningProtocol.MAGIC);
+				out.writeInt(inputSize);
+				out.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		this.receiver = new Thread(this::receive, "Q-table receiver");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+	
+	
+	public int getFlushEvery() {
+		return flushEvery;
+	}
+	
+	/**
+	 * Returns the weights values are currently recalled with.
+	 */
+	public NeuralNetworkState getPolicy() {
+		return policy;
+	}
+	
+	@Override
+	public void store(double[] state, Integer action, double value) {
+		Requirements.equal(Requirements.nonNull(state, "state").length, network.getInputSize(), "state length");
+		Requirements.nonNegative(action, "action");
+		Requirements.smallerThan(action, network.getOutputSize(), "action");
+		
+		synchronized (out) {
+			try {
+				QLearningProtocol.writeTransition(out, state, action, value);
+				if (++unflushed >= flushEvery) {
+					out.flush();
+					unflushed = 0;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	@Override
+	public Map<Integer, Double> recall(double[] state) {
+		double[] result = network.process(new InputSet(state), policy).getSet(0);
+		Map<Integer, Double> resultMap = new HashMap<Integer, Double>();
+		for (int i = 0; i < result.length; i++) {
+			resultMap.put(i, result[i]);
+		}
+		return resultMap;
+	}
+	
+	public void flush() {
+		synchronized (out) {
+			try {
+				out.flush();
+				unflushed = 0;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			socket.close();
+		}
+	}
+	
+	
+	private NeuralNetworkState readPolicy() throws IOException {
+		byte type = in.readByte();
+		if (type != QLearningProtocol.WEIGHTS) throw new IOException("Unexpected message type " + type);
+		return QLearningProtocol.readWeights(in);
+	}
+	
+	private void receive() {
+		try {
+			while (!socket.isClosed()) {
+				policy = readPolicy();
+			}
+		} catch (IOException e) {
+			// The connection was closed; keep acting with the last weights
+		}
+	}
+
+}
@@ -3,7 +3,10 @@ package com.n2d4.rachel.learning.regression;
 import com.n2d4.rachel.learning.CostFunction;
 import com.n2d4.rachel.learning.ActivationFunction;
 import com.n2d4.rachel.learning.OptimizationFunction;
+import com.n2d4.rachel.learning.WeightApplyFunction;
+import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.vectorization.DataSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
 
 public class LinearRegression extends Regression {
 
@@ -18,5 +21,28 @@ public class LinearRegression extends Regression {
 	public LinearRegression(CostFunction costFunction, OptimizationFunction optimizationFunction, DataSet dataSet) {
 		super(costFunction, ActivationFunction.LINEAR, optimizationFunction, dataSet);
 	}
+	
+	
+	/**
+	 * Fits the weights to the training set in closed form instead of by gradient descent, using every available processor. The result is the weights that gradient descent on the half squared cost converges to.
+	 */
+	public void solve(double ridge) {
+		solve(NormalEquations.accumulate(getDataSet().getTrainingSet(), NormalEquations.DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors()), ridge);
+	}
+	
+	/**
+	 * Writes the solution of the given normal equations into the weights. The equations may have been accumulated from any data, for example chunk by chunk from outside of memory.
+	 * 
+	 * @see NormalEquations#solve(double)
+	 */
+	public void solve(NormalEquations equations, double ridge) {
+		Requirements.nonNull(equations, "normal equations");
+		Requirements.throwErrorIf(getCostFunction() != CostFunction.HALF_SQUARED, Requirements.FormatStrings.mustBe, "cost function", "half squared to solve in closed form");
+		Requirements.throwErrorIf(getWeightApplyFunction() != WeightApplyFunction.MATRIX_MULT, Requirements.FormatStrings.mustBe, "weight apply function", "matrix multiplication to solve in closed form");
+		Requirements.equal(equations.getInputSize(), getWeights().getInputSize(), "normal equations input size");
+		Requirements.equal(equations.getOutputSize(), getWeights().getOutputSize(), "normal equations output size");
+		
+		VectorizedData.getINDArray(getWeights()).assign(VectorizedData.getINDArray(equations.solve(ridge)));
+	}
 
 }
@@ -0,0 +1,200 @@
+package com.n2d4.rachel.learning.regression;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.math.CholeskyDecomposition;
+import com.n2d4.rachel.vectorization.LayerWeights;
+import com.n2d4.rachel.vectorization.SupervisedInOutSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * The sufficient statistics X<sup>T</sup>X and X<sup>T</sup>y of a linear least squares problem, where X has a leading column of ones for the bias. They can be accumulated chunk by chunk, so the data never has to be in memory at once, and partial sums of different threads can be added together.
+ */
+public class NormalEquations implements Debuggable {
+	
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+	
+	private final int inputSize;
+	private final int outputSize;
+	private final INDArray xtx;
+	private final INDArray xty;
+	private long sampleCount;
+	
+	public NormalEquations(int inputSize, int outputSize) {
+		this.inputSize = Requirements.positive(inputSize, "input size");
+		this.outputSize = Requirements.positive(outputSize, "output size");
+		this.xtx = Nd4j.zeros(inputSize + 1, inputSize + 1);
+		this.xty = Nd4j.zeros(inputSize + 1, outputSize);
+	}
+	
+	
+	public int getInputSize() {
+		return inputSize;
+	}
+	
+	public int getOutputSize() {
+		return outputSize;
+	}
+	
+	public long getSampleCount() {
+		return sampleCount;
+	}
+	
+	
+	public void add(SupervisedInOutSet chunk) {
+		Requirements.nonNull(chunk, "chunk");
+		
+		add(VectorizedData.getINDArray(chunk.getInputSet()), VectorizedData.getINDArray(chunk.getOutputSet()));
+	}
+	
+	public void add(NormalEquations other) {
+		Requirements.nonNull(other, "other normal equations");
+		Requirements.equal(other.getInputSize(), getInputSize(), "input size");
+		Requirements.equal(other.getOutputSize(), getOutputSize(), "output size");
+		
+		xtx.addi(other.xtx);
+		xty.addi(other.xty);
+		sampleCount += other.sampleCount;
+	}
+	
+	private void add(INDArray input, INDArray output) {
+		Requirements.equal(input.columns(), getInputSize(), "chunk input size");
+		Requirements.equal(output.columns(), getOutputSize(), "chunk output size");
+		Requirements.equal(output.rows(), input.rows(), "chunk output set count");
+		
+		INDArray x = Nd4j.concat(1, Nd4j.ones(input.rows(), 1), input);
+		Nd4j.gemm(x, x, xtx, true, false, 1, 1);
+		Nd4j.gemm(x, output, xty, true, false, 1, 1);
+		sampleCount += input.rows();
+	}
+	
+	
+	/**
+	 * Solves the normal equations (X<sup>T</sup>X + ridge * I) w = X<sup>T</sup>y by Cholesky decomposition. The bias is not regularized. Because X<sup>T</sup>X is a sum over all samples, a ridge term equivalent to L2 weight decay {@code l2} on the mean cost is {@code l2 * getSampleCount()}.
+	 * 
+	 * @throws IllegalStateException if X<sup>T</sup>X + ridge * I is not positive definite, for example if features are linearly dependent and the ridge term is zero
+	 */
+	public LayerWeights solve(double ridge) {
+		Requirements.throwErrorIf(!(ridge >= 0), Requirements.FormatStrings.mustNotBe, "ridge term", "negative");
+		Requirements.throwErrorIf(sampleCount == 0, Requirements.FormatStrings.mustNotBe, "sample count", "zero");
+		
+		INDArray a = xtx.dup();
+		for (int i = 1; i <= inputSize; i++) {
+			a.putScalar(i, i, a.getDouble(i, i) + ridge);
+		}
+		
+		CholeskyDecomposition decomposition;
+		try {
+			decomposition = new CholeskyDecomposition(a);
+		} catch (IllegalStateException e) {
+			throw new IllegalStateException("Normal equations are not positive definite; the features may be linearly dependent, try a positive ridge term", e);
+		}
+		return new LayerWeights(decomposition.solve(xty));
+	}
+	
+	
+	
+	/**
+	 * Accumulates the normal equations of the given set in chunks of {@code chunkSize} sets, spread over {@code threads} threads.
+	 */
+	public static NormalEquations accumulate(SupervisedInOutSet set, int chunkSize, int threads) {
+		Requirements.nonNull(set, "set");
+		Requirements.positive(chunkSize, "chunk size");
+		
+		INDArray input = VectorizedData.getINDArray(set.getInputSet());
+		INDArray output = VectorizedData.getINDArray(set.getOutputSet());
+		int size = set.getSize();
+		Iterator<INDArray[]> chunks = new Iterator<INDArray[]>() {
+			private int from = 0;
+			
+			@Override public boolean hasNext() {
+				return from < size;
+			}
+			
+			@Override public INDArray[] next() {
+				int to = Math.min(from + chunkSize, size);
+				INDArray[] chunk = {input.get(NDArrayIndex.interval(from, to), NDArrayIndex.all()), output.get(NDArrayIndex.interval(from, to), NDArrayIndex.all())};
+				from = to;
+				return chunk;
+			}
+		};
+		return accumulate(chunks, set.getInputSize(), set.getOutputSize(), threads, (eq, chunk) -> eq.add(chunk[0], chunk[1]));
+	}
+	
+	/**
+	 * Accumulates the normal equations of every chunk returned by the iterator, spread over {@code threads} threads. The iterator is only ever called by one thread at a time, so it may lazily load the chunks from outside of memory.
+	 */
+	public static NormalEquations accumulate(Iterator<? extends SupervisedInOutSet> chunks, int inputSize, int outputSize, int threads) {
+		Requirements.nonNull(chunks, "chunks");
+		
+		return NormalEquations.<SupervisedInOutSet>accumulate(chunks, inputSize, outputSize, threads, (eq, chunk) -> eq.add(chunk));
+	}
+	
+	private static <T> NormalEquations accumulate(Iterator<? extends T> chunks, int inputSize, int outputSize, int threads, ChunkAdder<T> adder) {
+		Requirements.positive(threads, "thread count");
+		
+		NormalEquations result = new NormalEquations(inputSize, outputSize);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<NormalEquations>> futures = new ArrayList<Future<NormalEquations>>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					NormalEquations partial = new NormalEquations(inputSize, outputSize);
+					while (true) {
+						T chunk;
+						synchronized (chunks) {
+							if (!chunks.hasNext()) break;
+							chunk = chunks.next();
+						}
+						adder.add(partial, chunk);
+					}
+					return partial;
+				}));
+			}
+			for (Future<NormalEquations> future : futures) {
+				result.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while accumulating normal equations", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Accumulating normal equations failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+	
+	private static interface ChunkAdder<T> {
+		public void add(NormalEquations equations, T chunk);
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getInputSize()", getInputSize()).add("getOutputSize()", getOutputSize())
+				.add("getSampleCount()", getSampleCount());
+		return builder;
+	}
+
+}
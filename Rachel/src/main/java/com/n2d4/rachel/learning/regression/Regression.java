@@ -4,12 +4,18 @@ import com.n2d4.rachel.learning.CostFunction;
 
 import java.util.Random;
 
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
 import com.n2d4.rachel.learning.ActivationFunction;
+import com.n2d4.rachel.learning.Objective;
 import com.n2d4.rachel.learning.OptimizationFunction;
 import com.n2d4.rachel.learning.SupervisedLearner;
+import com.n2d4.rachel.learning.TrainingMetrics;
 import com.n2d4.rachel.learning.WeightApplyFunction;
 import com.n2d4.rachel.util.DebugStringBuilder;
 import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
 import com.n2d4.rachel.vectorization.CostSet;
 import com.n2d4.rachel.vectorization.DataSet;
 import com.n2d4.rachel.vectorization.InputSet;
@@ -21,6 +27,7 @@ import com.n2d4.rachel.vectorization.SupervisedInOutSet;
 import com.n2d4.rachel.vectorization.UnactivatedLayerOutputSet;
 import com.n2d4.rachel.vectorization.UnrolledBiasLackingParameters;
 import com.n2d4.rachel.vectorization.UnrolledParameters;
+import com.n2d4.rachel.vectorization.VectorizedData;
 import com.n2d4.rachel.vectorization.derivatives.ParameterError;
 import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
 
@@ -43,28 +50,108 @@ public abstract class Regression extends SupervisedLearner<RegressionState> {
 		return new RegressionState(getInputSize(), getOutputSize(), new Random(seed));
 	}
 	
+	@Override
+	protected RegressionState copyState(RegressionState state) {
+		return new RegressionState(state);
+	}
+	
 	
 	@Override
 	public void onTrain(SupervisedInOutSet trainingSet) {
 		getWeights().checkInOutSet(trainingSet);
 		
+		MetricsRegistry metrics = getMetrics();
 		InputSet input = trainingSet.getInputSet();
+		long started = metrics.start();
 		RegressionProcessResult res = processFull(input);
+		metrics.stop(TrainingMetrics.FORWARD, 0, started);
 		
+		started = metrics.start();
 		UnrolledParameters params = getUnrolledParameters();
-		UnrolledBiasLackingParameters noBias = getUnrolledBiasLackingParameters();
+		UnrolledBiasLackingParameters noBias = getWeightDecayParameters(getCostFunction(), getState());
 		
 		UnrolledParameterErrors deriv = new UnrolledParameterErrors(getWeightError(trainingSet, res, noBias));
+		metrics.stop(TrainingMetrics.BACKWARD, 0, started);
 		
-		getOptimizationFunction().step(getState().getOptimizationData(), params, deriv);
+		started = metrics.start();
+		getState().setOptimizationData(getOptimizationFunction().step(getState().getOptimizationData(), params, deriv, getObjective(trainingSet)));
+		metrics.stop(TrainingMetrics.OPTIMIZER_STEP, started);
+		
+		started = metrics.start();
 		params.reshapeOriginals();
+		metrics.stop(TrainingMetrics.RESHAPE, started);
+	}
+	
+	
+	
+	@Override
+	public UnrolledParameterErrors getCostDerivative(SupervisedInOutSet set) {
+		getWeights().checkInOutSet(set);
+		
+		RegressionProcessResult res = processFull(set.getInputSet());
+		return new UnrolledParameterErrors(getWeightError(set, res, getWeightDecayParameters(getCostFunction(), getState())));
+	}
+	
+	
+	
+	/**
+	 * If the cost function and hypothesis form a generalized linear model with canonical link (half squared cost with a linear hypothesis, or logarithmic cost with a sigmoid hypothesis), the objective also knows its Hessian.
+	 */
+	@Override
+	protected Objective getObjective(SupervisedInOutSet set) {
+		Objective objective = super.getObjective(set);
+		if (!hasCanonicalLink() || set.getOutputSet().hasMask()) return objective;
+		
+		return new Objective() {
+			@Override public double getCost(UnrolledParameters parameters) {
+				return objective.getCost(parameters);
+			}
+			
+			@Override public INDArray getHessian(UnrolledParameters parameters) {
+				parameters.reshapeOriginals();
+				return Regression.this.getHessian(set);
+			}
+		};
+	}
+	
+	protected boolean hasCanonicalLink() {
+		if (getWeightApplyFunction() != WeightApplyFunction.MATRIX_MULT && getWeightApplyFunction() != WeightApplyFunction.SPARSE_MATRIX_MULT) return false;
+		return (getCostFunction() == CostFunction.HALF_SQUARED && getActivationFunction() == ActivationFunction.LINEAR)
+				|| (getCostFunction() == CostFunction.LOGARITHMIC && getActivationFunction() == ActivationFunction.SIGMOID);
+	}
+	
+	/**
+	 * Returns the Hessian of the cost on the given set with respect to the unrolled weights. Every output only depends on its own weight column, so the Hessian is zero between different outputs; within an output, it is X<sup>T</sup> diag(h'(z)) X / m.
+	 */
+	protected INDArray getHessian(SupervisedInOutSet set) {
+		RegressionProcessResult result = processFull(set.getInputSet());
+		INDArray x = VectorizedData.getINDArray(result.getLayerInputSet());
+		INDArray actual = VectorizedData.getINDArray(result.getOutputSet());
+		int inputs = x.columns();
+		int outputs = actual.columns();
+		
+		INDArray hessian = Nd4j.zeros(inputs * outputs, inputs * outputs);
+		for (int c = 0; c < outputs; c++) {
+			INDArray weighted = x;
+			if (getActivationFunction() == ActivationFunction.SIGMOID) {
+				INDArray p = actual.getColumn(c);
+				weighted = x.dup().muliColumnVector(p.mul(p.rsub(1)));
+			}
+			INDArray block = x.transpose().mmul(weighted).muli(1d / x.rows());
+			for (int i = 0; i < inputs; i++) {
+				for (int j = 0; j < inputs; j++) {
+					hessian.putScalar(i * outputs + c, j * outputs + c, block.getDouble(i, j));
+				}
+			}
+		}
+		return hessian;
 	}
 	
 	
 	
 	@Override
-	protected CostSet getCost(CostFunction function, SupervisedInOutSet inoutSet, OutputSet actualOutput) {
-		return getCost(function, inoutSet, actualOutput, getUnrolledBiasLackingParameters());
+	protected CostSet getCost(CostFunction function, SupervisedInOutSet inoutSet, OutputSet actualOutput, RegressionState state) {
+		return getCost(function, inoutSet, actualOutput, getWeightDecayParameters(function, state));
 	}
 	
 	protected CostSet getCost(CostFunction function, SupervisedInOutSet inoutSet, RegressionProcessResult actualResult, UnrolledBiasLackingParameters biasLackingParams) {
@@ -94,11 +181,24 @@ public abstract class Regression extends SupervisedLearner<RegressionState> {
 		return new UnrolledBiasLackingParameters(getWeights().withoutBias());
 	}
 	
+	/**
+	 * Returns the bias-lacking parameters if the cost function {@link CostFunction#needsWeightDecayParameters() needs them}, null otherwise.
+	 */
+	protected UnrolledBiasLackingParameters getWeightDecayParameters(CostFunction function, RegressionState state) {
+		return function.needsWeightDecayParameters() ? new UnrolledBiasLackingParameters(state.getWeights().withoutBias()) : null;
+	}
+	
 
 	
 	public RegressionProcessResult processFull(InputSet input) {
+		return processFull(input, getState());
+	}
+	
+	public RegressionProcessResult processFull(InputSet input, RegressionState state) {
+		Requirements.nonNull(state, "state");
+		
 		LayerInputSet layerInputSet = new LayerInputSet(input);
-		UnactivatedLayerOutputSet unactivatedOutputSet = getWeightApplyFunction().getOutput(layerInputSet, getWeights());
+		UnactivatedLayerOutputSet unactivatedOutputSet = getWeightApplyFunction().getOutput(layerInputSet, state.getWeights());
 		LayerOutputSet layerOutputSet = getActivationFunction().apply(unactivatedOutputSet);
 		OutputSet outputSet = new OutputSet(layerOutputSet);
 		
@@ -106,18 +206,23 @@ public abstract class Regression extends SupervisedLearner<RegressionState> {
 	}
 	
 	@Override
-	public OutputSet process(InputSet input) {
-		return processFull(input).getOutputSet();
+	public OutputSet process(InputSet input, RegressionState state) {
+		return processFull(input, state).getOutputSet();
 	}
 	
 
 
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getIterationCount()", getIterationCount()).add("getWeights()", getWeights())
 				.add("getCostFunction()", getCostFunction());
-		return builder.toString();
+		return builder;
 	}
 	
 }
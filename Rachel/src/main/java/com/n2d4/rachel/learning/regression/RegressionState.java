@@ -5,12 +5,19 @@ import java.util.Random;
 import com.n2d4.rachel.learning.ExperimentState;
 import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.vectorization.LayerWeights;
+import com.n2d4.rachel.vectorization.VectorizedData;
 
 public class RegressionState extends ExperimentState {
 	private static final long serialVersionUID = 1L;
 	
 	private LayerWeights weights;
 	
+	public RegressionState(RegressionState from) {
+		super(Requirements.nonNull(from, "state to clone"));
+		
+		this.weights = new LayerWeights(VectorizedData.getINDArray(from.getWeights()).dup());
+	}
+	
 	public RegressionState(int inputSize, int outputSize, Random random) {
 		Requirements.positive(inputSize, "input size");
 		Requirements.positive(outputSize, "output size");
@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
@@ -15,6 +16,8 @@ import org.nd4j.linalg.ops.transforms.Transforms;
 
 import com.n2d4.rachel.learning.ActivationFunction;
 import com.n2d4.rachel.learning.CostFunction;
+import com.n2d4.rachel.learning.EarlyStoppingPolicy;
+import com.n2d4.rachel.learning.EarlyStoppingResult;
 import com.n2d4.rachel.learning.WeightApplyFunction;
 import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
 import com.n2d4.rachel.vectorization.DataSet;
@@ -126,53 +129,32 @@ public class Rachel {
 		
 			int iterations = 10_000_000;
 			int logevery = 1000;
+			int patience = 20;
+			boolean backgroundValidation = true;
 			int batchSize = 300;
 			double learningRateMin = 3;
 			double learningRateMax = 3;
 			double learningRateGrowth = 3;
 			int[][] layerSizes = {{50, 50}};
+			boolean multiClass = dataSource == 2 || dataSource == 8;		// one-hot classes; trained with softmax and cross-entropy
 			
 			for (int[] layerSize : layerSizes) {
 				for (double learningRate = learningRateMin; learningRate <= learningRateMax; learningRate *= learningRateGrowth > 1 ? learningRateGrowth : 3) {
-					NeuralNetwork network = new NeuralNetwork(dataSet, learningRate, layerSize);
+					NeuralNetwork network = multiClass ? new NeuralNetwork(CostFunction.CATEGORICAL_CROSS_ENTROPY, NeuralNetwork.DEFAULT_ACTIVATION_FUNCTION, ActivationFunction.SOFTMAX, dataSet, learningRate, layerSize)
+							: new NeuralNetwork(dataSet, learningRate, layerSize);
 					
-					for (int i = 1; i <= iterations; i++) {
-						boolean log = logevery > 0 && (i % logevery == 0 || i == iterations);
-						
-						if (log) {
-							OutputSet out = network.processTestSet();
-							System.out.println("=== Prior to training iteration " + i + " ===");
-							System.out.println(network);
-							
-							
-							/*InputSet coolInSet = new InputSet(generateCoolArray(1000, 16));
-							INDArray ksetI = VectorizedData.getINDArray(coolInSet);
-							ksetI.subi(8);
-							INDArray ksetO = VectorizedData.getINDArray(network.process(coolInSet));
-							for (int mk = 0; mk < ksetI.rows(); mk++) {
-								System.out.print("(" + String.format("%.2f", ksetI.getDouble(mk, 0)) + ", " + String.format("%.2f", ksetO.getDouble(mk, 0)) + ") ");
-							}
-							System.out.println();*/
-							
-							
-							System.out.println(out);
-							System.out.println("Difference:\n" + out.getDifference(network.getDataSet().getTestSet().getOutputSet()));
-							System.out.println("Training set error:\n" + network.getTrainingError());
-							System.out.println("Validation set error:\n" + network.getValidationError());
-							System.out.println("Test set error:\n" + network.getError());
-							System.out.println("Linear test set error:\n" + network.getError(CostFunction.LINEAR));
-						}
-						
-						long timeStarted = System.nanoTime();
-						if (batchSize > 0) network.train(batchSize);
-						else network.train();
-						long timeEnded = System.nanoTime();
-						
-						if (log) {
-							System.out.println("Training iteration " + i + " complete after " + String.format("%.2f", (timeEnded - timeStarted) / 1_000_000d) + "ms!");
-							System.out.println();
-						}
-					}
+					EarlyStoppingPolicy policy = new EarlyStoppingPolicy(logevery, patience, backgroundValidation);
+					network.getMetrics().setEnabled(true);
+					network.getMetrics().startDumping(System.out, 30, TimeUnit.SECONDS);
+					EarlyStoppingResult result = network.train(iterations, batchSize, policy, (iteration, validationError, improved) -> {
+						System.out.println("=== After training iteration " + iteration + " ===");
+						System.out.println("Validation set error" + (improved ? " (new best)" : "") + ":\n" + validationError);
+						System.out.println();
+					});
+					network.getMetrics().stopDumping();
+					
+					System.out.println("Training stopped after " + result.getIterations() + " iterations at " + String.format("%.1f", network.getSamplesPerSecond()) + " samples/s" + (result.hasStoppedEarly() ? " (early)" : "") + ", restored iteration " + result.getBestIteration());
+					System.out.println("Training metrics:\n" + network.getMetrics());
 					
 					OutputSet out = network.processTestSet();
 					
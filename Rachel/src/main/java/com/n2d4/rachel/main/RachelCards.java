@@ -1,22 +1,22 @@
 package com.n2d4.rachel.main;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
 import com.n2d4.rachel.learning.CostFunction;
+import com.n2d4.rachel.learning.OptimizationFunction;
+import com.n2d4.rachel.learning.WeightApplyFunction;
+import com.n2d4.rachel.learning.evaluation.Episode;
+import com.n2d4.rachel.learning.evaluation.EvaluationReport;
+import com.n2d4.rachel.learning.evaluation.MonteCarloEvaluator;
 import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetworkState;
 import com.n2d4.rachel.main.gameengines.CardGame;
 import com.n2d4.rachel.main.gameengines.CardGame.Card;
 import com.n2d4.rachel.main.gameengines.CardGame.CardColor;
 import com.n2d4.rachel.main.gameengines.CardGame.CardType;
-import com.n2d4.rachel.util.Requirements;
-import com.n2d4.rachel.vectorization.ContinuousDataSet;
-import com.n2d4.rachel.vectorization.InputSet;
-import com.n2d4.rachel.vectorization.OutputSet;
-import com.n2d4.rachel.vectorization.TestSet;
-import com.n2d4.rachel.vectorization.TrainingSet;
-import com.n2d4.rachel.vectorization.ValidationSet;
-import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.vectorization.OnlineDataSet;
 
 public class RachelCards {
 
@@ -56,8 +56,10 @@ public class RachelCards {
 		
 		
 		
-		CardsDataSet dataSet = new CardsDataSet(cardCount * (!compactData ? CardType.getTotalCount() + CardColor.values().length : 2), trainingSetSize);
-		NeuralNetwork network = new NeuralNetwork(dataSet, learningRate, 200, 200);
+		OnlineDataSet dataSet = new OnlineDataSet(cardCount * (!compactData ? CardType.getTotalCount() + CardColor.values().length : 2), 1, trainingSetSize, !compactData);
+		NeuralNetwork network = new NeuralNetwork(NeuralNetwork.DEFAULT_COST_FUNCTION, NeuralNetwork.DEFAULT_ACTIVATION_FUNCTION, OptimizationFunction.GRADIENT_DESCENT(learningRate), WeightApplyFunction.SPARSE_MATRIX_MULT, dataSet, 200, 200);
+		CompletableFuture<Void> evaluation = CompletableFuture.completedFuture(null);
+		MonteCarloEvaluator<NeuralNetworkState> evaluator = new MonteCarloEvaluator<NeuralNetworkState>(network, 2, !compactData);
 		
 		
 		for (int iterations = 1; iterations <= totalIterations; iterations++) {
@@ -75,40 +77,20 @@ public class RachelCards {
 				System.out.println(network);
 				System.out.println("Training set error:\n" + network.getTrainingError());
 				System.out.println("Linear training set error:\n" + network.getTrainingError(CostFunction.LINEAR));
-				int correct = 0;
-				int totPositives = 0;
-				int totNegatives = 0;
-				int truePositives = 0;
-				int trueNegatives = 0;
-				int falsePositives = 0;
-				int falseNegatives = 0;
-				for (int i = 0; i < logIterations; i++) {
-					Card[] logCards = Card.getRandom(cardCount);
-					double logValue = CardGame.getSimpleValue(logCards, ofWhich, careAboutColor);
-					
-					INDArray arr = VectorizedData.getINDArray(network.process(new InputSet(createData(logCards, compactData))));
-					double out = arr.getDouble(0);
-					boolean cor = (logValue > 0.5);
-					boolean exp = (out > 0.5);
-					if (cor == exp) {
-						correct++;
-						if (cor) truePositives++;
-						else trueNegatives++;
-					} else {
-						if (cor) falsePositives++;
-						else falseNegatives++;
-					}
-					if (cor) totPositives++;
-					else totNegatives++;
-				}
-				System.out.println("Correct: " + correct + "/" + (logIterations) + " (" + String.format("%.1f", (100 * correct / (double) logIterations)) + "%)");
-				System.out.println("True positives: " + truePositives + "/" + (totPositives) + " (" + String.format("%.1f", (100 * truePositives / (double) totPositives)) + "%)");
-				System.out.println("False negatives: " + falsePositives + "/" + (totPositives) + " (" + String.format("%.1f", (100 * falsePositives / (double) totPositives)) + "%)");
-				System.out.println("True negatives: " + trueNegatives + "/" + (totNegatives) + " (" + String.format("%.1f", (100 * trueNegatives / (double) totNegatives)) + "%)");
-				System.out.println("False positives: " + falseNegatives + "/" + (totNegatives) + " (" + String.format("%.1f", (100 * falseNegatives / (double) totNegatives)) + "%)");
 				System.out.println();
+				
+				if (evaluation.isDone()) {
+					int evaluatedAt = iterations;
+					evaluation = evaluator.submit(random -> new CardsEpisode(Card.getRandom(cardCount, random), ofWhich, careAboutColor, compactData), logIterations)
+							.thenAccept(report -> System.out.println("Evaluation of training iteration " + evaluatedAt + ":\n" + report.getSummary()));
+				} else {
+					System.out.println("Skipping the evaluation of training iteration " + iterations + ", the last one is still running");
+				}
 			}
 		}
+		
+		evaluation.join();
+		evaluator.shutdown();
 	}
 	
 	
@@ -151,48 +133,35 @@ public class RachelCards {
 	
 	
 	
-	private static class CardsDataSet implements ContinuousDataSet {
-		
-		private final int setSize;
-		private final int inputSize;
-		private final InputSet inputSet;
-		private final OutputSet outputSet;
-		private int counter = 0;
+	/**
+	 * Classifies a single hand as valuable or not.
+	 */
+	private static class CardsEpisode implements Episode {
 		
-		public CardsDataSet(int inputSize, int setSize) {
-			this.inputSize = inputSize;
-			this.setSize = setSize;
-			
-			inputSet = new InputSet(Nd4j.randn(setSize, getInputSize()));
-			outputSet = new OutputSet(Nd4j.randn(setSize, getOutputSize()));
-		}
+		private final Card[] cards;
+		private final int ofWhich;
+		private final boolean careAboutColor;
+		private final boolean compact;
+		private INDArray outputs;
 		
-		@Override public TrainingSet getTrainingSet() {
-			return new TrainingSet(inputSet, outputSet);
+		public CardsEpisode(Card[] cards, int ofWhich, boolean careAboutColor, boolean compact) {
+			this.cards = cards;
+			this.ofWhich = ofWhich;
+			this.careAboutColor = careAboutColor;
+			this.compact = compact;
 		}
 		
-		@Override public ValidationSet getValidationSet() {
-			return new ValidationSet(inputSet, outputSet);
+		@Override public double[][] getPendingInputs() {
+			return outputs != null ? null : new double[][] {createData(cards, compact)};
 		}
 		
-		@Override public TestSet getTestSet() {
-			return new TestSet(inputSet, outputSet);
+		@Override public void receiveOutputs(INDArray outputs) {
+			this.outputs = outputs;
 		}
 		
-		@Override public int getInputSize() {
-			return inputSize;
-		}
-	
-		@Override public int getOutputSize() {
-			return 1;
-		}
-		public void add(double[] input, double[] output) {
-			Requirements.equal(input.length, getInputSize(), "input length");
-			Requirements.equal(output.length, getOutputSize(), "output length");
-			
-			VectorizedData.getINDArray(inputSet).putRow(counter, Nd4j.create(input));
-			VectorizedData.getINDArray(outputSet).putRow(counter, Nd4j.create(output));
-			counter = ++counter % setSize;
+		@Override public void report(EvaluationReport report) {
+			double value = CardGame.getSimpleValue(cards, ofWhich, careAboutColor);
+			report.addPrediction(value > 0.5 ? 1 : 0, outputs.getDouble(0, 0) > 0.5 ? 1 : 0);
 		}
 	}
 
@@ -0,0 +1,101 @@
+package com.n2d4.rachel.main;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.n2d4.rachel.learning.distributed.ParameterServer;
+import com.n2d4.rachel.learning.distributed.ParameterServerWorker;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.OutputSet;
+import com.n2d4.rachel.vectorization.StaticDataSet;
+
+/**
+ * Trains a network to tell whether points lie within a circle, with the data split over worker processes that push to a {@link ParameterServer} on the loopback interface. Arguments are the worker count and the mode, {@code sync} or {@code stale}; with {@code worker <host> <port> <shard> <shard count>}, runs a single worker.
+ */
+public class RachelParameterServer {
+	
+	static final int dataSize = 20_000;
+	static final long dataSeed = 42;
+	static final double learningRate = 1;
+	static final int[] hiddenLayerSizes = {16, 16};
+	static final int batchSize = 100;
+	static final int stepsPerWorker = 2000;
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length == 5 && args[0].equals("worker")) {
+			work(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+			return;
+		}
+		
+		final int workerCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		final ParameterServer.Mode mode = args.length > 1 && args[1].equals("stale") ? ParameterServer.Mode.BOUNDED_STALENESS : ParameterServer.Mode.SYNCHRONOUS;
+		
+		
+		
+		System.out.println("Workers: " + workerCount + ", mode: " + mode);
+		System.out.println();
+		
+		double[][] points = createPoints();
+		NeuralNetwork network = newNetwork(new StaticDataSet(new InputSet(points), createOutputs(points)));
+		List<Process> workers = new ArrayList<Process>();
+		try (ParameterServer server = new ParameterServer(network, 0, workerCount, mode)) {
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			long started = System.nanoTime();
+			for (int i = 0; i < workerCount; i++) {
+				workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), RachelParameterServer.class.getName(),
+						"worker", "localhost", Integer.toString(server.getPort()), Integer.toString(i), Integer.toString(workerCount))
+						.inheritIO().start());
+			}
+			
+			server.awaitWorkers();
+			double seconds = (System.nanoTime() - started) / 1e9;
+			System.out.println("Steps: " + server.getVersion() + " in " + String.format("%.1f", seconds) + " seconds");
+			System.out.println("Pushes per second: " + String.format("%.1f", server.getPushRate()));
+			System.out.println("Mean staleness: " + String.format("%.2f", server.getMetrics().getHistogram(ParameterServer.STALENESS).getMean()));
+			System.out.println("Validation error:\n" + network.getValidationError());
+		} finally {
+			for (Process worker : workers) {
+				worker.destroy();
+			}
+		}
+	}
+	
+	
+	private static void work(String host, int port, int shard, int shardCount) throws Exception {
+		double[][] points = createPoints();
+		NeuralNetwork network = newNetwork(StaticDataSet.shard(new InputSet(points), createOutputs(points), shard, shardCount, 0, 0));
+		try (ParameterServerWorker worker = new ParameterServerWorker(network, host, port, batchSize)) {
+			worker.step(stepsPerWorker);
+		}
+	}
+	
+	private static NeuralNetwork newNetwork(StaticDataSet dataSet) {
+		return new NeuralNetwork(dataSet, learningRate, hiddenLayerSizes);
+	}
+	
+	
+	/**
+	 * Every process creates the same points from the same seed, so the shards of the workers are disjoint.
+	 */
+	private static double[][] createPoints() {
+		Random random = new Random(dataSeed);
+		double[][] points = new double[dataSize][2];
+		for (double[] point : points) {
+			point[0] = random.nextDouble() * 2 - 1;
+			point[1] = random.nextDouble() * 2 - 1;
+		}
+		return points;
+	}
+	
+	private static OutputSet createOutputs(double[][] points) {
+		double[][] outputs = new double[points.length][1];
+		for (int i = 0; i < points.length; i++) {
+			outputs[i][0] = points[i][0] * points[i][0] + points[i][1] * points[i][1] < 0.5 ? 1 : 0;
+		}
+		return new OutputSet(outputs);
+	}
+
+}
@@ -1,22 +1,21 @@
 package com.n2d4.rachel.main;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
 import com.n2d4.rachel.learning.CostFunction;
+import com.n2d4.rachel.learning.evaluation.Episode;
+import com.n2d4.rachel.learning.evaluation.EvaluationReport;
+import com.n2d4.rachel.learning.evaluation.MonteCarloEvaluator;
 import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetworkState;
 import com.n2d4.rachel.main.gameengines.CardGame;
 import com.n2d4.rachel.main.gameengines.CardGame.Card;
-import com.n2d4.rachel.util.Requirements;
-import com.n2d4.rachel.vectorization.ContinuousDataSet;
-import com.n2d4.rachel.vectorization.InputSet;
-import com.n2d4.rachel.vectorization.OutputSet;
-import com.n2d4.rachel.vectorization.TestSet;
-import com.n2d4.rachel.vectorization.TrainingSet;
-import com.n2d4.rachel.vectorization.ValidationSet;
-import com.n2d4.rachel.vectorization.VectorizedData;
+import com.n2d4.rachel.util.Util;
+import com.n2d4.rachel.vectorization.OnlineDataSet;
 
 public class RachelPoker {
 	
@@ -32,8 +31,10 @@ public class RachelPoker {
 		int logIterations = 100_000;
 		
 		
-		PokerDataSet dataSet = new PokerDataSet(cardCount * 2, trainingSetSize);
+		OnlineDataSet dataSet = new OnlineDataSet(cardCount * 2, 1, trainingSetSize);
 		NeuralNetwork network = new NeuralNetwork(dataSet, 0.3, 50, 50);
+		CompletableFuture<Void> evaluation = CompletableFuture.completedFuture(null);
+		MonteCarloEvaluator<NeuralNetworkState> evaluator = new MonteCarloEvaluator<NeuralNetworkState>(network, 2, false);
 		
 		
 		
@@ -56,29 +57,20 @@ public class RachelPoker {
 				System.out.println(network);
 				System.out.println("Training set error:\n" + network.getTrainingError());
 				System.out.println("Linear training set error:\n" + network.getTrainingError(CostFunction.LINEAR));
-				int correct = 0;
-				for (int i = 0; i < logIterations; i++) {
-					Card[][] logHands = getHands(playerCount, cardCount);
-					double[] logValues = getValues(logHands);
-					int logWinner = getWinner(logValues);
-					
-					double[][] in = new double[logHands.length][];
-					for (int j = 0; j < logHands.length; j++) {
-						in[j] = createData(logHands[j]);
-					}
-					
-					INDArray arr = VectorizedData.getINDArray(network.process(new InputSet(in)));
-					for (int j = 0; j < logHands.length; j++) {
-						double out = arr.getDouble(j);
-						if ((out > 0.5) == (j == logWinner)) {
-							correct++;
-						}
-					}
-				}
-				System.out.println("Correct: " + correct + "/" + (playerCount * logIterations) + " (" + String.format("%.1f", (100 * correct / (double) (playerCount * logIterations))) + "%)");
 				System.out.println();
+				
+				if (evaluation.isDone()) {
+					int evaluatedAt = iterations;
+					evaluation = evaluator.submit(random -> new PokerEpisode(getHands(playerCount, cardCount, random)), logIterations)
+							.thenAccept(report -> System.out.println("Evaluation of training iteration " + evaluatedAt + ":\n" + report.getSummary()));
+				} else {
+					System.out.println("Skipping the evaluation of training iteration " + iterations + ", the last one is still running");
+				}
 			}
 		}
+		
+		evaluation.join();
+		evaluator.shutdown();
 	}
 	
 	
@@ -97,8 +89,12 @@ public class RachelPoker {
 	}
 	
 	private static Card[][] getHands(int playerCount, int cardCount) {
+		return getHands(playerCount, cardCount, Util.getRandom());
+	}
+	
+	private static Card[][] getHands(int playerCount, int cardCount, Random random) {
 		Card[][] hands = new Card[playerCount][cardCount];
-		Card[] stack = Card.getShuffledStack();
+		Card[] stack = Card.getShuffledStack(random);
 		int i = 0;
 		for (int j = 0; j < hands.length; j++) {
 			hands[j] = Arrays.copyOfRange(stack, i, i += cardCount);
@@ -156,48 +152,37 @@ public class RachelPoker {
 	
 	
 	
-	private static class PokerDataSet implements ContinuousDataSet {
+	/**
+	 * Deals one hand per player; every hand is classified as winning or not.
+	 */
+	private static class PokerEpisode implements Episode {
 		
-		private final int setSize;
-		private final int inputSize;
-		private final InputSet inputSet;
-		private final OutputSet outputSet;
-		private int counter = 0;
+		private final Card[][] hands;
+		private INDArray outputs;
 		
-		public PokerDataSet(int inputSize, int setSize) {
-			this.inputSize = inputSize;
-			this.setSize = setSize;
-			
-			inputSet = new InputSet(Nd4j.randn(setSize, getInputSize()));
-			outputSet = new OutputSet(Nd4j.randn(setSize, getOutputSize()));
-		}
-		
-		@Override public TrainingSet getTrainingSet() {
-			return new TrainingSet(inputSet, outputSet);
+		public PokerEpisode(Card[][] hands) {
+			this.hands = hands;
 		}
 		
-		@Override public ValidationSet getValidationSet() {
-			return new ValidationSet(inputSet, outputSet);
+		@Override public double[][] getPendingInputs() {
+			if (outputs != null) return null;
+			
+			double[][] result = new double[hands.length][];
+			for (int i = 0; i < hands.length; i++) {
+				result[i] = createData(hands[i]);
+			}
+			return result;
 		}
 		
-		@Override public TestSet getTestSet() {
-			return new TestSet(inputSet, outputSet);
+		@Override public void receiveOutputs(INDArray outputs) {
+			this.outputs = outputs;
 		}
 		
-		@Override public int getInputSize() {
-			return inputSize;
-		}
-	
-		@Override public int getOutputSize() {
-			return 1;
-		}
-		public void add(double[] input, double[] output) {
-			Requirements.equal(input.length, getInputSize(), "input length");
-			Requirements.equal(output.length, getOutputSize(), "output length");
-			
-			VectorizedData.getINDArray(inputSet).putRow(counter, Nd4j.create(input));
-			VectorizedData.getINDArray(outputSet).putRow(counter, Nd4j.create(output));
-			counter = ++counter % setSize;
+		@Override public void report(EvaluationReport report) {
+			int winner = getWinner(getValues(hands));
+			for (int i = 0; i < hands.length; i++) {
+				report.addPrediction(i == winner ? 1 : 0, outputs.getDouble(i, 0) > 0.5 ? 1 : 0);
+			}
 		}
 	}
 
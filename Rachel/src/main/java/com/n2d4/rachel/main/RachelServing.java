@@ -0,0 +1,107 @@
+package com.n2d4.rachel.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.serving.MicroBatcher;
+import com.n2d4.rachel.serving.ModelServer;
+import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.OutputSet;
+import com.n2d4.rachel.vectorization.StaticDataSet;
+
+/**
+ * Trains a network on XOR, serves it on the loopback interface and scores it with many concurrent clients.
+ */
+public class RachelServing {
+	
+	public static void main(String[] args) throws Exception {
+		final int trainingIterations = 20_000;
+		final int clients = 32;
+		final int requestsPerClient = 500;
+		final int maxBatchSize = 64;
+		final long maxDelayMicros = 1000;
+		
+		
+		
+		InputSet inputSet = new InputSet(new double[][] {{0, 0}, {0, 1}, {1, 0}, {1, 1}});
+		OutputSet outputSet = new OutputSet(new double[][]{{0}, {1}, {1}, {0}});
+		NeuralNetwork network = new NeuralNetwork(new StaticDataSet(inputSet, outputSet, 0, 0), 3, 4);
+		for (int i = 0; i < trainingIterations; i++) {
+			network.train();
+		}
+		System.out.println("Training error:\n" + network.getTrainingError());
+		System.out.println();
+		network.publishState();
+		
+		MicroBatcher batcher = new MicroBatcher(network, maxBatchSize, maxDelayMicros, TimeUnit.MICROSECONDS);
+		ModelServer server = new ModelServer(batcher, 0);
+		server.start();
+		URL predict = new URL("http://localhost:" + server.getPort() + ModelServer.PREDICT_PATH);
+		System.out.println("Serving on " + server.getAddress());
+		
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		List<Future<Integer>> wrong = new ArrayList<Future<Integer>>();
+		for (int c = 0; c < clients; c++) {
+			int seed = c;
+			wrong.add(executor.submit(() -> {
+				Random random = new Random(seed);
+				int result = 0;
+				for (int i = 0; i < requestsPerClient; i++) {
+					int a = random.nextInt(2);
+					int b = random.nextInt(2);
+					double output = Double.parseDouble(post(predict, a + "," + b).trim());
+					if ((output > 0.5) != (a != b)) result++;
+				}
+				return result;
+			}));
+		}
+		int totalWrong = 0;
+		for (Future<Integer> future : wrong) {
+			totalWrong += future.get();
+		}
+		executor.shutdown();
+		
+		System.out.println("Wrong answers: " + totalWrong + "/" + clients * requestsPerClient);
+		System.out.print(server.getStats());
+		server.stop(0);
+		batcher.shutdown();
+	}
+	
+	
+	private static String post(URL url, String body) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+			try (InputStream in = connection.getInputStream()) {
+				ByteArrayOutputStream result = new ByteArrayOutputStream();
+				byte[] buffer = new byte[256];
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					result.write(buffer, 0, read);
+				}
+				return new String(result.toByteArray(), StandardCharsets.UTF_8);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.n2d4.rachel.main;
+
+import java.util.Random;
+
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetworkStack;
+import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.OutputSet;
+import com.n2d4.rachel.vectorization.StaticDataSet;
+import com.n2d4.rachel.vectorization.SupervisedInOutSet;
+
+/**
+ * Trains a seed ensemble of networks on the same data, once one by one and once as a {@link NeuralNetworkStack}, and compares their throughput. The argument is the ensemble size.
+ */
+public class RachelStack {
+	
+	static final int dataSize = 5000;
+	static final double learningRate = 1;
+	static final int[] hiddenLayerSizes = {50, 50};
+	static final int batchSize = 100;
+	static final int steps = 500;
+	
+	public static void main(String[] args) {
+		final int networkCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		
+		
+		
+		Random random = new Random(42);
+		double[][] inputs = new double[dataSize][8];
+		double[][] outputs = new double[dataSize][1];
+		for (int i = 0; i < dataSize; i++) {
+			double sum = 0;
+			for (int j = 0; j < inputs[i].length; j++) {
+				inputs[i][j] = random.nextDouble() * 2 - 1;
+				sum += inputs[i][j] * (j % 2 == 0 ? 1 : -1);
+			}
+			outputs[i][0] = Math.sin(3 * sum) > 0 ? 1 : 0;
+		}
+		StaticDataSet dataSet = new StaticDataSet(new InputSet(inputs), new OutputSet(outputs));
+		
+		NeuralNetwork[] separate = newNetworks(dataSet, networkCount);
+		long started = System.nanoTime();
+		for (int s = 0; s < steps; s++) {
+			SupervisedInOutSet batch = dataSet.getTrainingSet().getRandomizedBatch(batchSize);
+			for (NeuralNetwork network : separate) {
+				network.train(network.getCostDerivative(batch));
+			}
+		}
+		double separateSeconds = (System.nanoTime() - started) / 1e9;
+		
+		NeuralNetworkStack stack = new NeuralNetworkStack(newNetworks(dataSet, networkCount));
+		started = System.nanoTime();
+		for (int s = 0; s < steps; s++) {
+			stack.train(batchSize);
+		}
+		double stackedSeconds = (System.nanoTime() - started) / 1e9;
+		
+		double samples = (double) steps * batchSize * networkCount;
+		System.out.println("Networks: " + networkCount);
+		System.out.println("Separate samples per second: " + String.format("%.0f", samples / separateSeconds));
+		System.out.println("Stacked samples per second: " + String.format("%.0f", samples / stackedSeconds));
+		for (int i = 0; i < Math.min(networkCount, 4); i++) {
+			System.out.println("Validation error of network " + i + ":\n" + stack.getNetwork(i).getValidationError());
+		}
+	}
+	
+	
+	private static NeuralNetwork[] newNetworks(StaticDataSet dataSet, int count) {
+		NeuralNetwork[] result = new NeuralNetwork[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = new NeuralNetwork(dataSet, learningRate, hiddenLayerSizes);
+		}
+		return result;
+	}
+
+}
@@ -6,6 +6,7 @@ import com.n2d4.rachel.learning.CostFunction;
 import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
 import com.n2d4.rachel.learning.qlearning.NeuralQLearner;
 import com.n2d4.rachel.learning.qlearning.NeuralQTable;
+import com.n2d4.rachel.learning.qlearning.QLearner;
 import com.n2d4.rachel.main.gameengines.CardGame;
 import com.n2d4.rachel.main.gameengines.CardGame.Card;
 import com.n2d4.rachel.main.gameengines.CardGame.CardColor;
@@ -79,7 +80,7 @@ public class RachelThrow {
 	}
 	
 	
-	private static double playRound(NeuralQLearner learner, int cardCount, double epsilon, boolean compactData, boolean learn, boolean log) {
+	static double playRound(QLearner<double[], Integer> learner, int cardCount, double epsilon, boolean compactData, boolean learn, boolean log) {
 		learner.resetRound();
 		Card[] cards = Card.getRandom(cardCount);
 		if (log) System.out.println("Cards: " + Arrays.toString(cards));
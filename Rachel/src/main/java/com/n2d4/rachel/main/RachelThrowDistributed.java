@@ -0,0 +1,76 @@
+package com.n2d4.rachel.main;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.n2d4.rachel.learning.qlearning.NeuralQTable;
+import com.n2d4.rachel.learning.qlearning.QLearner;
+import com.n2d4.rachel.learning.qlearning.QLearnerServer;
+import com.n2d4.rachel.learning.qlearning.RemoteQTable;
+import com.n2d4.rachel.main.gameengines.CardGame.CardColor;
+
+/**
+ * {@link RachelThrow} with acting and learning split into processes. Without arguments, starts a learner on the loopback interface and as many actor processes as there are processors; with {@code actor <host> <port>}, runs a single actor.
+ */
+public class RachelThrowDistributed {
+	
+	static final int cardCount = 3;
+	static final int trainOnEvery = 30;
+	static final int trainingSetSize = 500;
+	static final double neuralLearningRate = 1;
+	static final int[] hiddenLayerSizes = {50, 50};
+	
+	static final double qLearningRate = 0.2;
+	static final double discountFactor = 0.6;
+	static final double epsilon = 0.05;
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("actor")) {
+			act(args[1], Integer.parseInt(args[2]));
+			return;
+		}
+		
+		final int actorCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		final int logEverySeconds = 5;
+		final int totalSeconds = 300;
+		
+		
+		
+		System.out.println("Actors: " + actorCount);
+		System.out.println();
+		
+		int inSize = cardCount * CardColor.values().length;
+		NeuralQTable table = new NeuralQTable(inSize, cardCount, trainingSetSize, trainOnEvery, neuralLearningRate, hiddenLayerSizes);
+		List<Process> actors = new ArrayList<Process>();
+		try (QLearnerServer server = new QLearnerServer(table, 0)) {
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			for (int i = 0; i < actorCount; i++) {
+				actors.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), RachelThrowDistributed.class.getName(), "actor", "localhost", Integer.toString(server.getPort()))
+						.inheritIO().start());
+			}
+			
+			for (int seconds = logEverySeconds; seconds <= totalSeconds; seconds += logEverySeconds) {
+				Thread.sleep(logEverySeconds * 1000L);
+				System.out.println("After " + seconds + " seconds, " + server.getActorCount() + " actors:");
+				System.out.println("Transitions per second: " + String.format("%.1f", server.getTransitionRate()));
+				System.out.println("Network iterations: " + table.getNetwork().getIterationCount());
+				System.out.println();
+			}
+		} finally {
+			for (Process actor : actors) {
+				actor.destroy();
+			}
+		}
+	}
+	
+	
+	private static void act(String host, int port) {
+		RemoteQTable table = new RemoteQTable(host, port);
+		QLearner<double[], Integer> learner = new QLearner<double[], Integer>(table, qLearningRate, discountFactor);
+		while (true) {
+			RachelThrow.playRound(learner, cardCount, epsilon, false, true, false);
+		}
+	}
+
+}
@@ -1,22 +1,29 @@
 package com.n2d4.rachel.main;
 
-import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
-import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
 
 import com.n2d4.rachel.learning.ActivationFunction;
 import com.n2d4.rachel.learning.CostFunction;
+import com.n2d4.rachel.learning.OptimizationFunction;
+import com.n2d4.rachel.learning.WeightApplyFunction;
+import com.n2d4.rachel.learning.evaluation.Episode;
+import com.n2d4.rachel.learning.evaluation.EvaluationReport;
+import com.n2d4.rachel.learning.evaluation.MonteCarloEvaluator;
 import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetworkState;
 import com.n2d4.rachel.main.gameengines.TicTacToeGame;
 import com.n2d4.rachel.main.gameengines.TileGame.TurnResult;
+import com.n2d4.rachel.util.DebugLog;
 import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.TranspositionCache;
 import com.n2d4.rachel.util.Util;
-import com.n2d4.rachel.vectorization.ContinuousDataSet;
+import com.n2d4.rachel.vectorization.OnlineDataSet;
 import com.n2d4.rachel.vectorization.InputSet;
 import com.n2d4.rachel.vectorization.OutputSet;
-import com.n2d4.rachel.vectorization.TestSet;
-import com.n2d4.rachel.vectorization.TrainingSet;
-import com.n2d4.rachel.vectorization.ValidationSet;
+import com.n2d4.rachel.vectorization.SparseInputSet;
 import com.n2d4.rachel.vectorization.VectorizedData;
 
 /**
@@ -27,57 +34,52 @@ import com.n2d4.rachel.vectorization.VectorizedData;
  * 
  * Tic Tac Toe (aka. noughts and crosses or X and Os) is a special 3x3 Tile game for 2 players. To
  * win, one must mark three tiles in a vertical, horizontal or diagonal line.
- *
+ * 
  */
 public class RachelTicTacToe {
 	
-	protected static final TilesDataSet data = new TilesDataSet(9 * 2);
-	protected static final NeuralNetwork network = new NeuralNetwork(CostFunction.HALF_SQUARED, ActivationFunction.ANALYTIC, data, 0.05, new int[] {50, 50});
+	protected static final OnlineDataSet data = new OnlineDataSet(9 * 2, 1, 1, true);
+	protected static final NeuralNetwork network = new NeuralNetwork(CostFunction.HALF_SQUARED, ActivationFunction.ANALYTIC, OptimizationFunction.GRADIENT_DESCENT(0.05), WeightApplyFunction.SPARSE_MATRIX_MULT, data, new int[] {50, 50});
+	
+	protected static final TranspositionCache ratingCache = new TranspositionCache(1 << 16);
+	protected static final TileGameEvaluator evaluator = new TileGameEvaluator(network, ratingCache);
+	protected static final MonteCarloEvaluator<NeuralNetworkState> testEvaluator = new MonteCarloEvaluator<NeuralNetworkState>(network, 0, true);
+	
+	protected static final DebugLog netLog = new DebugLog(System.out, DebugLog.Level.SUMMARY, 1000);
 	
 	private static double[] lastInput;
 	
 	public static void main(String[] args) throws InterruptedException {
-		lognet();
+		lognet(true);
 		
 		
 		
 		long totalIterations = 10_000;
 		long logEvery = 1000;
-		long testIterations = 1000;
+		int testIterations = 1000;
 		
 		
+		CompletableFuture<Void> evaluation = CompletableFuture.completedFuture(null);
 		for (int i = 0; i < totalIterations; i++) {
 			playRound(-1, false, true);
 			
 			
 			
 			if (i % logEvery == logEvery - 1) {
-				lognet();
-				System.out.println("After " + (i + 1) + " training iterations, starting " + testIterations + " test iterations:");
-				int wins = 0;
-				int draws = 0;
-				int losses = 0;
-				for (int j = 0; j < testIterations; j++) {
-					int nwinner = playRound(1, false, false);
-					switch(nwinner) {
-					case -1:
-						losses++;
-						break;
-					case 0:
-						draws++;
-						break;
-					case 1:
-						wins++;
-						break;
-					}
+				lognet(true);
+				int trainedFor = i + 1;
+				System.out.println("Rating cache: " + ratingCache.getHits() + " network evaluations saved, hit rate " + String.format("%.1f%%", ratingCache.getHitRate() * 100));
+				if (evaluation.isDone()) {
+					evaluation = testEvaluator.submit(random -> new TicTacToeEpisode(1, random), testIterations)
+							.thenAccept(report -> System.out.println("After " + trainedFor + " training iterations, " + testIterations + " test games:\n" + report.getSummary()));
+				} else {
+					System.out.println("Skipping the test games after " + trainedFor + " training iterations, the last ones are still running");
 				}
-				System.out.println("Wins: " + wins + ", " + String.format("%.2f", 100 * wins / (double) testIterations) + "%");
-				System.out.println("Draws: " + draws + ", " + String.format("%.2f", 100 * draws / (double) testIterations) + "%");
-				System.out.println("Losses: " + losses + ", " + String.format("%.2f", 100 * losses / (double) testIterations) + "%");
-				System.out.println();
 			}
 			
 		}
+		evaluation.join();
+		testEvaluator.shutdown();
 		
 		System.out.println("Playing some example games in 5 seconds...");
 		Thread.sleep(5_000);
@@ -90,18 +92,22 @@ public class RachelTicTacToe {
 		}
 	}
 	
-	private static void lognet() {
+	/**
+	 * Logs the network. Unless forced, only every {@link DebugLog#getSampleEvery() n-th} call actually logs anything.
+	 */
+	private static void lognet(boolean force) {
+		if (!(force ? netLog.isEnabled() : netLog.sample())) return;
+		
 		OutputSet out = network.processTestSet();
-		System.out.println("=== Neural Network After Iteration " + network.getIterationCount() + " ===");
-		System.out.println(network);
-		System.out.println(network.getDataSet().getTestSet());
-		System.out.println(out);
-		System.out.println("Difference:\n" + out.getDifference(network.getDataSet().getTestSet().getOutputSet()));
-		System.out.println("Training set error:\n" + network.getTrainingError());
-		System.out.println("Validation set error:\n" + network.getValidationError());
-		System.out.println("Test set error:\n" + network.getError());
-		System.out.println("Linear test set error:\n" + network.getError(CostFunction.LINEAR));
-		System.out.println();
+		netLog.println("=== Neural Network After Iteration " + network.getIterationCount() + " ===");
+		netLog.println(network);
+		netLog.println(out);
+		netLog.println("Difference:", out.getDifference(network.getDataSet().getTestSet().getOutputSet()));
+		netLog.println("Training set error:", network.getTrainingError());
+		netLog.println("Validation set error:", network.getValidationError());
+		netLog.println("Test set error:", network.getError());
+		netLog.println("Linear test set error:", network.getError(CostFunction.LINEAR));
+		netLog.println();
 	}
 	
 	
@@ -126,18 +132,18 @@ public class RachelTicTacToe {
 				break;
 			case DRAW:
 				if (log) System.out.println("The game has ended in a draw!");
-				if (train) registerReward(lastInput, createInput(game), -0.05);
+				if (train) registerReward(lastInput, game, -0.05);
 				return 0;
 			case VICTORY:
 				if (log) System.out.println("Player " + (turn.getPlayer() + 1) + " is the winner!");
-					if (train) registerReward(lastInput, createInput(game), 1);
+					if (train) registerReward(lastInput, game, 1);
 					return (botPlayer < 0 || turn.getPlayer() == botPlayer) ? 1 : -1;
 			case GAME_ALREADY_ENDED:
 				throw new RuntimeException("The game has already ended!");
 			case TILE_OCCUPIED:
 				throw new RuntimeException("This tile is already occupied!");
 			}
-			if (train) registerReward(lastInput, createInput(game), reward);
+			if (train) registerReward(lastInput, game, reward);
 			
 			if (log) System.out.println();
 		}
@@ -164,16 +170,13 @@ public class RachelTicTacToe {
 	public static int[] findBest(TicTacToeGame game) {
 		Requirements.nonNull(game, "game");
 		int[][] all = game.getAvailableTiles();
-		int[] boardSize = game.getBoardSize();
 		
 		int[] curBest = null;
 		double curBestRating = 0;
-		double[] input = lastInput = createInput(game);
+		lastInput = createInput(game);
+		evaluator.reset(game);
 		for (int[] cur : all) {
-			double[] ninput = Arrays.copyOf(input, input.length);
-			int ipos = Util.toFlatInt(cur, boardSize) * game.getPlayerCount();
-			ninput[ipos] = 1;
-			double rating = rate(ninput);
+			double rating = evaluator.rateMove(cur);
 			if (curBest == null || rating > curBestRating) {
 				curBest = cur;
 				curBestRating = rating;
@@ -186,85 +189,97 @@ public class RachelTicTacToe {
 	
 	
 	protected static double[] createInput(TicTacToeGame game) {
-		int playerCount = game.getPlayerCount();
-		int curPlayer = game.getCurrentPlayer();
-		double[] result = new double[game.getTileCount() * playerCount];
-		int[] max = game.getBoardSize();
-		int[] cur = Util.elementWiseLoopInit(max.length);
-		while (Util.elementWiseIncrement(cur, max)) {
-			int t = game.getTile(cur);
-			for (int i = 0; i < playerCount; i++) {
-				int p = (curPlayer + i) % playerCount;
-				int ipos = Util.toFlatInt(cur, max) * playerCount + i;
-				result[ipos] = (p == t ? 1 : 0);
-			}
-		}
-		
-		return result;
+		return TileGameEvaluator.createInput(game);
 	}
 	
 	
 	protected static double rate(double[] input) {
-		double reward = VectorizedData.getINDArray(network.process(new InputSet(input))).getDouble(0);
+		double reward = VectorizedData.getINDArray(network.process(SparseInputSet.view(new InputSet(input)))).getDouble(0);
 		return reward;
 	}
 	
-	protected static void registerReward(double[] lastInput, double[] nextBoard, double reward) {
+	/**
+	 * Rates the board from the view of the current player, looking it up in the rating cache first.
+	 */
+	protected static double rate(TicTacToeGame game) {
+		return ratingCache.get(game.getCanonicalKey(), network.getIterationCount(), () -> rate(createInput(game)));
+	}
+	
+	protected static void registerReward(double[] lastInput, TicTacToeGame game, double reward) {
 		if (lastInput == null) return;
 		
-		reward += rate(nextBoard);
+		reward += rate(game);
 		data.add(lastInput, new double[] {reward});
 		network.train();
-		lognet();
+		lognet(false);
 	}
 	
 	
 	
 	
 	
-	private static class TilesDataSet implements ContinuousDataSet {
+	/**
+	 * A game of the network, always choosing its best-rated move, against a random player.
+	 */
+	private static class TicTacToeEpisode implements Episode {
 		
-		private static final int setSize = 1;
+		private final TicTacToeGame game = new TicTacToeGame();
+		private final int botPlayer;
+		private final Random random;
+		private int[][] candidates;
+		private boolean over = false;
+		private int result;
 		
-		private final int inputSize;
-		private final InputSet inputSet;
-		private final OutputSet outputSet;
-		private int counter = 0;
-		
-		public TilesDataSet(int inputSize) {
-			this.inputSize = inputSize;
-			
-			inputSet = new InputSet(Nd4j.randn(setSize, getInputSize()));
-			outputSet = new OutputSet(Nd4j.randn(setSize, getOutputSize()));
-		}
-		
-		@Override public TrainingSet getTrainingSet() {
-			return new TrainingSet(inputSet, outputSet);
+		public TicTacToeEpisode(int botPlayer, Random random) {
+			this.botPlayer = botPlayer;
+			this.random = random;
 		}
 		
-		@Override public ValidationSet getValidationSet() {
-			return new ValidationSet(inputSet, outputSet);
+		@Override public double[][] getPendingInputs() {
+			while (!over && game.getCurrentPlayer() != botPlayer) {
+				int[][] all = game.getAvailableTiles();
+				play(all[random.nextInt(all.length)]);
+			}
+			if (over) return null;
+			
+			candidates = game.getAvailableTiles();
+			double[][] inputs = new double[candidates.length][];
+			for (int i = 0; i < candidates.length; i++) {
+				inputs[i] = TileGameEvaluator.createInputWith(game, candidates[i], game.getCurrentPlayer());
+			}
+			return inputs;
 		}
 		
-		@Override public TestSet getTestSet() {
-			return new TestSet(inputSet, outputSet);
+		@Override public void receiveOutputs(INDArray outputs) {
+			int best = 0;
+			for (int i = 1; i < candidates.length; i++) {
+				if (outputs.getDouble(i, 0) > outputs.getDouble(best, 0)) best = i;
+			}
+			play(candidates[best]);
 		}
 		
-		@Override public int getInputSize() {
-			return inputSize;
-		}
-	
-		@Override public int getOutputSize() {
-			return 1;
+		private void play(int[] tile) {
+			TurnResult turn = game.turn(tile);
+			switch (turn.getType()) {
+			case VALID:
+				break;
+			case DRAW:
+				over = true;
+				result = 0;
+				break;
+			case VICTORY:
+				over = true;
+				result = turn.getPlayer() == botPlayer ? 1 : -1;
+				break;
+			case GAME_ALREADY_ENDED:
+				throw new RuntimeException("The game has already ended!");
+			case TILE_OCCUPIED:
+				throw new RuntimeException("This tile is already occupied!");
+			}
 		}
 		
-		public void add(double[] input, double[] output) {
-			Requirements.equal(input.length, getInputSize(), "input length");
-			Requirements.equal(output.length, getOutputSize(), "output length");
-			
-			VectorizedData.getINDArray(inputSet).putRow(counter, Nd4j.create(input));
-			VectorizedData.getINDArray(outputSet).putRow(counter, Nd4j.create(output));
-			counter = ++counter % setSize;
+		@Override public void report(EvaluationReport report) {
+			report.addGameResult(result);
 		}
 	}
 	
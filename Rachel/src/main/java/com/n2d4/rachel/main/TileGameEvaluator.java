@@ -0,0 +1,200 @@
+package com.n2d4.rachel.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.n2d4.rachel.learning.neuralnetwork.IncrementalEvaluator;
+import com.n2d4.rachel.learning.neuralnetwork.NeuralNetwork;
+import com.n2d4.rachel.main.gameengines.TileGame;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.TranspositionCache;
+import com.n2d4.rachel.util.Util;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * Rates the positions of a {@link TileGame} with a neural network, updating the network's first layer incrementally as tiles are placed and removed.
+ * <p>
+ * Boards are encoded in their {@link TileGame#getCanonicalSymmetry() canonical orientation}, relative to the player to move on {@link #reset(TileGame) reset}, like {@link #createInput(TileGame)} encodes training inputs. An optional {@link TranspositionCache} is consulted while the board still matches the game.
+ */
+public class TileGameEvaluator {
+	
+	private final NeuralNetwork network;
+	private final IncrementalEvaluator evaluator;
+	private final TranspositionCache cache;
+	private TileGame game;
+	private long gameKey;
+	private long version;
+	private int[] boardSize;
+	private int playerCount;
+	private int perspective;
+	private int symmetry;
+	
+	public TileGameEvaluator(NeuralNetwork network) {
+		this(network, null);
+	}
+	
+	/**
+	 * @param cache the cache of ratings, which may be shared with other evaluators of the same network and game size; may be null
+	 */
+	public TileGameEvaluator(NeuralNetwork network, TranspositionCache cache) {
+		this.network = Requirements.nonNull(network, "network");
+		this.evaluator = new IncrementalEvaluator(network);
+		this.cache = cache;
+	}
+	
+	
+	/**
+	 * Returns the input of the given game's board in its canonical orientation, seen from its current player.
+	 */
+	public static double[] createInput(TileGame game) {
+		Requirements.nonNull(game, "game");
+		
+		return createInput(game, game.getCanonicalSymmetry());
+	}
+	
+	/**
+	 * Returns the input of the given game's board after the given player marks the given tile, in the canonical orientation of that board and seen from the game's current player. Gravity is not applied.
+	 */
+	public static double[] createInputWith(TileGame game, int[] pos, int player) {
+		Requirements.nonNull(game, "game");
+		
+		int symmetry = game.getCanonicalSymmetryWith(pos, player);
+		double[] result = createInput(game, symmetry);
+		result[getInputIndex(game, symmetry, pos, player)] = 1;
+		return result;
+	}
+	
+	private static double[] createInput(TileGame game, int symmetry) {
+		int playerCount = game.getPlayerCount();
+		double[] result = new double[game.getTileCount() * playerCount];
+		int[] max = game.getBoardSize();
+		int[] cur = Util.elementWiseLoopInit(max.length);
+		while (Util.elementWiseIncrement(cur, max)) {
+			int t = game.getTile(cur);
+			if (t >= 0) result[getInputIndex(game, symmetry, cur, t)] = 1;
+		}
+		
+		return result;
+	}
+	
+	private static int getInputIndex(TileGame game, int symmetry, int[] pos, int player) {
+		int playerCount = game.getPlayerCount();
+		return Util.toFlatInt(game.getSymmetricPosition(symmetry, pos), game.getBoardSize()) * playerCount + (player - game.getCurrentPlayer() + playerCount) % playerCount;
+	}
+	
+	
+	/**
+	 * Loads the given game's board, seen from its current player, with the network's current weights.
+	 */
+	public void reset(TileGame game) {
+		Requirements.nonNull(game, "game");
+		
+		boardSize = game.getBoardSize();
+		playerCount = game.getPlayerCount();
+		perspective = game.getCurrentPlayer();
+		symmetry = game.getCanonicalSymmetry();
+		evaluator.reset(createInput(game, symmetry));
+		this.game = game;
+		this.gameKey = game.getCanonicalKey();
+		this.version = network.getIterationCount();
+	}
+	
+	public TranspositionCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Returns the input of the given tile and player, in the orientation of the board the evaluator was reset with.
+	 */
+	public int getInputIndex(int[] pos, int player) {
+		return getInputIndex(pos, player, symmetry);
+	}
+	
+	private int getInputIndex(int[] pos, int player, int symmetry) {
+		Requirements.nonNegative(player, "player");
+		Requirements.smallerThan(player, playerCount, "player");
+		
+		return Util.toFlatInt(game.getSymmetricPosition(symmetry, pos), boardSize) * playerCount + (player - perspective + playerCount) % playerCount;
+	}
+	
+	public void place(int[] pos, int player) {
+		evaluator.activate(getInputIndex(pos, player));
+	}
+	
+	public void remove(int[] pos, int player) {
+		evaluator.deactivate(getInputIndex(pos, player));
+	}
+	
+	public int getUndoDepth() {
+		return evaluator.getUndoDepth();
+	}
+	
+	public void undo() {
+		evaluator.undo();
+	}
+	
+	public void undoTo(int depth) {
+		evaluator.undoTo(depth);
+	}
+	
+	
+	public double rate() {
+		if (!isCacheable()) return evaluate();
+		return cache.get(gameKey, version, this::evaluate);
+	}
+	
+	/**
+	 * Rates the board after the perspective player marks the given tile, without keeping the change.
+	 */
+	public double rateMove(int[] pos) {
+		if (!isGameBoard()) return evaluateMove(pos, symmetry);
+		
+		int moveSymmetry = game.getCanonicalSymmetryWith(pos, perspective);
+		if (cache == null) return evaluateMove(pos, moveSymmetry);
+		return cache.get(game.getCanonicalKeyWith(pos, perspective), version, () -> evaluateMove(pos, moveSymmetry));
+	}
+	
+	private boolean isGameBoard() {
+		return game != null && evaluator.getUndoDepth() == 0 && game.getCanonicalKey() == gameKey;
+	}
+	
+	private boolean isCacheable() {
+		return cache != null && isGameBoard();
+	}
+	
+	private double evaluate() {
+		return VectorizedData.getINDArray(evaluator.evaluate()).getDouble(0);
+	}
+	
+	/**
+	 * Evaluates the board with the given tile marked, turned into the given orientation. Every change is undone afterwards.
+	 */
+	private double evaluateMove(int[] pos, int moveSymmetry) {
+		int depth = evaluator.getUndoDepth();
+		try {
+			if (moveSymmetry != symmetry) {
+				int[][] marked = getMarkedTiles();
+				for (int[] tile : marked) {
+					evaluator.deactivate(getInputIndex(tile, game.getTile(tile), symmetry));
+				}
+				for (int[] tile : marked) {
+					evaluator.activate(getInputIndex(tile, game.getTile(tile), moveSymmetry));
+				}
+			}
+			evaluator.activate(getInputIndex(pos, perspective, moveSymmetry));
+			return evaluate();
+		} finally {
+			evaluator.undoTo(depth);
+		}
+	}
+	
+	private int[][] getMarkedTiles() {
+		List<int[]> result = new ArrayList<>();
+		int[] cur = Util.elementWiseLoopInit(boardSize.length);
+		while (Util.elementWiseIncrement(cur, boardSize)) {
+			if (game.getTile(cur) >= 0) result.add(cur.clone());
+		}
+		return result.toArray(new int[0][]);
+	}
+	
+}
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.Util;
 
 public class CardGame {
 
@@ -285,20 +287,32 @@ public class CardGame {
 		
 		
 		public static final Card[] getShuffledStack() {
+			return getShuffledStack(Util.getRandom());
+		}
+		
+		public static final Card[] getShuffledStack(Random random) {
 			List<Card> result = new ArrayList<Card>(Arrays.asList(stack));
-			Collections.shuffle(result);
-			return result.toArray(stack);
+			Collections.shuffle(result, Requirements.nonNull(random, "random"));
+			return result.toArray(new Card[result.size()]);
 		}
 		
 		public static final Card getRandom() {
-			return new Card(CardType.getRandom(), CardColor.getRandom());
+			return getRandom(Util.getRandom());
+		}
+		
+		public static final Card getRandom(Random random) {
+			return new Card(CardType.getRandom(random), CardColor.getRandom(random));
 		}
 		
 		public static final Card[] getRandom(int count) {
+			return getRandom(count, Util.getRandom());
+		}
+		
+		public static final Card[] getRandom(int count, Random random) {
 			Requirements.nonNegative(count, "card count");
 			Requirements.smallerThan(count, stack.length, "card count");
 			
-			return Arrays.copyOf(getShuffledStack(), count);
+			return Arrays.copyOf(getShuffledStack(random), count);
 		}
 		
 		
@@ -358,8 +372,12 @@ public class CardGame {
 		}
 		
 		public static final CardColor getRandom() {
+			return getRandom(Util.getRandom());
+		}
+		
+		public static final CardColor getRandom(Random random) {
 			CardColor[] values = CardColor.values();
-			return values[(int) (Math.random() * values.length)];
+			return values[random.nextInt(values.length)];
 		}
 	}
 	
@@ -410,8 +428,12 @@ public class CardGame {
 		}
 		
 		public static final CardType getRandom() {
+			return getRandom(Util.getRandom());
+		}
+		
+		public static final CardType getRandom(Random random) {
 			CardType[] values = values();
-			return values[(int) (Math.random() * values.length)];
+			return values[random.nextInt(values.length)];
 		}
 		
 		public static final CardType[] sort(CardType[] cards) {
@@ -4,18 +4,26 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.util.Util;
 
 public abstract class TileGame {
 	
+	private static final long ZOBRIST_SEED = 0x7113_6A3EL;
+	private static final ConcurrentMap<List<Integer>, SymmetryTables> symmetryTables = new ConcurrentHashMap<>();
+	
 	private final int[][] board;
 	private final int toWin;
 	private final boolean gravity;
 	private final int playerCount;
 	private int curPlayer;
 	private boolean gameEnded = false;
+	private final SymmetryTables tables;
+	private final long[] keys;
 
 	public TileGame(int playerCount, int boardWidth, int boardHeight, int toWin, boolean gravity) {
 		Requirements.positive(playerCount, "player count");
@@ -32,6 +40,24 @@ public abstract class TileGame {
 		this.playerCount = playerCount;
 		this.toWin = toWin;
 		this.gravity = gravity;
+		
+		this.tables = symmetryTables.computeIfAbsent(Arrays.asList(boardWidth, boardHeight, playerCount, gravity ? 1 : 0),
+				k -> new SymmetryTables(boardWidth, boardHeight, playerCount, gravity));
+		this.keys = new long[tables.symmetricTiles.length];
+	}
+	
+	/**
+	 * Returns the position the given one is mapped to by the given symmetry. Bit 2 of the symmetry swaps the axes, which only square boards allow, then bits 0 and 1 mirror the x and y axes.
+	 */
+	private static int[] getSymmetricPosition(int symmetry, int x, int y, int width, int height) {
+		if ((symmetry & 4) != 0) {
+			int t = x;
+			x = y;
+			y = t;
+		}
+		if ((symmetry & 1) != 0) x = width - 1 - x;
+		if ((symmetry & 2) != 0) y = height - 1 - y;
+		return new int[] {x, y};
 	}
 	
 	
@@ -89,7 +115,9 @@ public abstract class TileGame {
 			} while (++y < height);
 		}
 		
+		if (board[x][y] >= 0) toggleKeys(x, y, board[x][y]);
 		board[x][y] = player;
+		if (player >= 0) toggleKeys(x, y, player);
 	}
 	
 	public void setTile(int[] pos, int player) {
@@ -99,9 +127,85 @@ public abstract class TileGame {
 	}
 	
 	public void resetTile(int x, int y) {
+		if (board[x][y] >= 0) toggleKeys(x, y, board[x][y]);
 		board[x][y] = -1;
 	}
 	
+	/**
+	 * Returns the amount of symmetries of the board: the eight of the square for square boards, the four of the rectangle otherwise, and only the identity and the mirror image for games with gravity, whose bottom row is fixed.
+	 */
+	public int getSymmetryCount() {
+		return keys.length;
+	}
+	
+	/**
+	 * Returns the position the given tile is mapped to by the given symmetry, which is smaller than the {@link #getSymmetryCount() symmetry count}. Symmetry 0 is the identity.
+	 */
+	public int[] getSymmetricPosition(int symmetry, int[] pos) {
+		Requirements.equal(pos.length, 2, "position array length");
+		Requirements.nonNegative(symmetry, "symmetry");
+		Requirements.smallerThan(symmetry, getSymmetryCount(), "symmetry");
+		
+		return getSymmetricPosition(symmetry, pos[0], pos[1], getBoardWidth(), getBoardHeight());
+	}
+	
+	/**
+	 * Returns the symmetry that maps the board to its canonical orientation, the one whose Zobrist hash is smallest; ties go to the lowest symmetry. Boards that are symmetric to each other have the same canonical orientation, so anything derived from the board in that orientation, such as the input of a network, is the same for all of them.
+	 */
+	public int getCanonicalSymmetry() {
+		int result = 0;
+		for (int s = 1; s < keys.length; s++) {
+			if (keys[s] < keys[result]) result = s;
+		}
+		return result;
+	}
+	
+	/**
+	 * Same as {@link #getCanonicalSymmetry()}, but as if the given tile was additionally marked by the given player. Gravity is not applied.
+	 */
+	public int getCanonicalSymmetryWith(int[] pos, int player) {
+		int tile = getTileIndex(pos, player);
+		int result = 0;
+		for (int s = 1; s < keys.length; s++) {
+			if (getKeyWith(s, tile, player) < getKeyWith(result, tile, player)) result = s;
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a Zobrist hash of the board in its {@link #getCanonicalSymmetry() canonical orientation} and the current player, which is the same for all boards that are symmetric to each other. It is updated incrementally as tiles are set and reset, so this is cheap to call.
+	 */
+	public long getCanonicalKey() {
+		return keys[getCanonicalSymmetry()] ^ tables.playerKeys[curPlayer];
+	}
+	
+	/**
+	 * Same as {@link #getCanonicalKey()}, but as if the given tile was additionally marked by the given player. Gravity is not applied.
+	 */
+	public long getCanonicalKeyWith(int[] pos, int player) {
+		int tile = getTileIndex(pos, player);
+		return getKeyWith(getCanonicalSymmetryWith(pos, player), tile, player) ^ tables.playerKeys[curPlayer];
+	}
+	
+	private int getTileIndex(int[] pos, int player) {
+		Requirements.equal(pos.length, 2, "position array length");
+		Requirements.nonNegative(player, "player");
+		Requirements.smallerThan(player, playerCount, "player");
+		
+		return pos[0] * getBoardHeight() + pos[1];
+	}
+	
+	private long getKeyWith(int symmetry, int tile, int player) {
+		return keys[symmetry] ^ tables.tileKeys[tables.symmetricTiles[symmetry][tile] * playerCount + player];
+	}
+	
+	private void toggleKeys(int x, int y, int player) {
+		int tile = x * getBoardHeight() + y;
+		for (int s = 0; s < keys.length; s++) {
+			keys[s] ^= tables.tileKeys[tables.symmetricTiles[s][tile] * playerCount + player];
+		}
+	}
+	
 	public int[] getBoardSize() {
 		return new int[] {getBoardWidth(), getBoardHeight()};
 	}
@@ -285,6 +389,39 @@ public abstract class TileGame {
 	}
 	
 	
+	/**
+	 * The symmetries and Zobrist keys of a board size, shared by every game of that size. Keys only depend on the board size and player count, so equal positions of different games have equal keys.
+	 */
+	private static final class SymmetryTables {
+		private final int[][] symmetricTiles;
+		private final long[] tileKeys;
+		private final long[] playerKeys;
+		
+		SymmetryTables(int width, int height, int playerCount, boolean gravity) {
+			int symmetryCount = gravity ? 2 : width == height ? 8 : 4;
+			this.symmetricTiles = new int[symmetryCount][width * height];
+			for (int s = 0; s < symmetryCount; s++) {
+				for (int x = 0; x < width; x++) {
+					for (int y = 0; y < height; y++) {
+						int[] pos = getSymmetricPosition(s, x, y, width, height);
+						symmetricTiles[s][x * height + y] = pos[0] * height + pos[1];
+					}
+				}
+			}
+			
+			Random random = new Random(ZOBRIST_SEED);
+			this.tileKeys = new long[width * height * playerCount];
+			for (int i = 0; i < tileKeys.length; i++) {
+				tileKeys[i] = random.nextLong();
+			}
+			this.playerKeys = new long[playerCount];
+			for (int i = 0; i < playerKeys.length; i++) {
+				playerKeys[i] = random.nextLong();
+			}
+		}
+	}
+	
+	
 	public static class TurnResult {
 		private TurnResultType type;
 		private int player;
@@ -0,0 +1,219 @@
+package com.n2d4.rachel.serving;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.learning.SupervisedLearner;
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
+import com.n2d4.rachel.vectorization.InputSet;
+import com.n2d4.rachel.vectorization.VectorizedData;
+
+/**
+ * Coalesces single-row requests from many threads into batches of at most {@link #getMaxBatchSize()} rows, waiting at most {@link #getMaxDelayNanos()} nanoseconds for a batch to fill up.
+ * <p>
+ * Batches are processed with the learner's {@link SupervisedLearner#getPublishedState() published state}, which must exist.
+ */
+public class MicroBatcher implements Debuggable {
+	
+	public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+	public static final long DEFAULT_MAX_DELAY_MICROS = 2000;
+	
+	private final SupervisedLearner<?> learner;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final Thread worker;
+	private volatile boolean running = true;
+	
+	public MicroBatcher(SupervisedLearner<?> learner) {
+		this(learner, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+	}
+	
+	public MicroBatcher(SupervisedLearner<?> learner, int maxBatchSize, long maxDelay, TimeUnit unit) {
+		this.learner = Requirements.nonNull(learner, "learner");
+		Requirements.throwErrorIf(learner.getPublishedState() == null, Requirements.FormatStrings.mustBe, "learner", "one that published its state");
+		this.maxBatchSize = Requirements.positive(maxBatchSize, "maximum batch size");
+		Requirements.throwErrorIf(maxDelay < 0, Requirements.FormatStrings.mustNotBe, "maximum delay", "negative");
+		this.maxDelayNanos = Requirements.nonNull(unit, "time unit").toNanos(maxDelay);
+		
+		this.worker = new Thread(this::run, "Micro-batcher");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+	
+	
+	public SupervisedLearner<?> getLearner() {
+		return learner;
+	}
+	
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+	
+	public long getMaxDelayNanos() {
+		return maxDelayNanos;
+	}
+	
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+	
+	public int getQueueLength() {
+		return queue.size();
+	}
+	
+	/**
+	 * Returns the given percentile of the time between submitting a request and its completion, in nanoseconds.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return metrics.getHistogram(ServingMetrics.LATENCY).getPercentile(percentile);
+	}
+	
+	/**
+	 * Returns the amount of requests completed per second since the metrics were last reset.
+	 */
+	public double getThroughput() {
+		return metrics.getRate(ServingMetrics.REQUESTS);
+	}
+	
+	public double getMeanBatchSize() {
+		return metrics.getHistogram(ServingMetrics.BATCH_SIZE).getMean();
+	}
+	
+	
+	/**
+	 * Queues the given input row and returns a future of the learner's output for it.
+	 */
+	public CompletableFuture<double[]> submit(double[] input) {
+		Requirements.nonNull(input, "input");
+		Requirements.equal(input.length, learner.getInputSize(), "input length");
+		
+		Request request = new Request(input.clone());
+		queue.add(request);
+		if (!running && queue.remove(request)) {		// The worker may already have failed the queued requests
+			request.result.completeExceptionally(new IllegalStateException("The micro-batcher was shut down"));
+		}
+		return request.result;
+	}
+	
+	/**
+	 * Stops the worker thread. Requests that are still queued fail with an {@link IllegalStateException}.
+	 */
+	public void shutdown() {
+		running = false;
+		worker.interrupt();
+	}
+	
+	
+	private void run() {
+		List<Request> batch = new ArrayList<Request>(maxBatchSize);
+		try {
+			while (running) {
+				batch.add(queue.take());
+				collect(batch);
+				process(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// Shut down
+		}
+		
+		IllegalStateException shutDown = new IllegalStateException("The micro-batcher was shut down");
+		for (Request request : batch) {
+			request.result.completeExceptionally(shutDown);
+		}
+		Request request;
+		while ((request = queue.poll()) != null) {
+			request.result.completeExceptionally(shutDown);
+		}
+	}
+	
+	private void collect(List<Request> batch) throws InterruptedException {
+		long deadline = batch.get(0).enqueued + maxDelayNanos;
+		while (batch.size() < maxBatchSize) {
+			queue.drainTo(batch, maxBatchSize - batch.size());
+			if (batch.size() >= maxBatchSize) break;
+			
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) break;
+			Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) break;
+			batch.add(next);
+		}
+	}
+	
+	private void process(List<Request> batch) {
+		long started = System.nanoTime();
+		double[][] rows = new double[batch.size()][];
+		for (int i = 0; i < rows.length; i++) {
+			Request request = batch.get(i);
+			rows[i] = request.input;
+			metrics.record(ServingMetrics.QUEUE_WAIT, started - request.enqueued);
+		}
+		
+		INDArray output;
+		try {
+			output = VectorizedData.getINDArray(learner.processPublished(new InputSet(rows)));
+		} catch (RuntimeException e) {
+			metrics.increment(ServingMetrics.FAILURES, batch.size());
+			for (Request request : batch) {
+				request.result.completeExceptionally(e);
+			}
+			return;
+		}
+		metrics.stop(ServingMetrics.FORWARD, started);
+		
+		int columns = output.columns();
+		for (int i = 0; i < rows.length; i++) {
+			double[] result = new double[columns];
+			for (int j = 0; j < columns; j++) {
+				result[j] = output.getDouble(i, j);
+			}
+			Request request = batch.get(i);
+			metrics.record(ServingMetrics.LATENCY, System.nanoTime() - request.enqueued);
+			request.result.complete(result);
+		}
+		metrics.record(ServingMetrics.BATCH_SIZE, batch.size());
+		metrics.increment(ServingMetrics.BATCHES, 1);
+		metrics.increment(ServingMetrics.REQUESTS, batch.size());
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getMaxBatchSize()", getMaxBatchSize()).add("getMaxDelayNanos()", getMaxDelayNanos())
+				.add("getQueueLength()", getQueueLength()).add("getMetrics()", getMetrics());
+		return builder;
+	}
+	
+	
+	
+	private static class Request {
+		
+		private final double[] input;
+		private final long enqueued = System.nanoTime();
+		private final CompletableFuture<double[]> result = new CompletableFuture<double[]>();
+		
+		public Request(double[] input) {
+			this.input = input;
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.n2d4.rachel.serving;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A plain-text HTTP front end for a {@link MicroBatcher}. {@value #PREDICT_PATH} takes one comma- or whitespace-separated input row per line; {@value #STATS_PATH} reports the batcher's statistics.
+ */
+public class ModelServer implements Debuggable {
+	
+	public static final String PREDICT_PATH = "/predict";
+	public static final String STATS_PATH = "/stats";
+	
+	private final MicroBatcher batcher;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	
+	/**
+	 * Binds to the given port of the loopback address; 0 picks a free port.
+	 */
+	public ModelServer(MicroBatcher batcher, int port) {
+		this(batcher, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+	
+	public ModelServer(MicroBatcher batcher, InetSocketAddress address) {
+		this.batcher = Requirements.nonNull(batcher, "micro-batcher");
+		Requirements.nonNull(address, "address");
+		
+		try {
+			this.server = HttpServer.create(address, 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.executor = Executors.newCachedThreadPool((r) -> {
+			Thread thread = new Thread(r, "Model server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext(PREDICT_PATH, this::handlePredict);
+		server.createContext(STATS_PATH, this::handleStats);
+	}
+	
+	
+	public MicroBatcher getBatcher() {
+		return batcher;
+	}
+	
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+	
+	public int getPort() {
+		return getAddress().getPort();
+	}
+	
+	public void start() {
+		server.start();
+	}
+	
+	/**
+	 * Stops accepting requests and waits at most the given amount of seconds for open exchanges to finish. Does not shut the batcher down.
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Returns the text {@value #STATS_PATH} answers with.
+	 */
+	public String getStats() {
+		return String.format("p50: %.3f ms%np99: %.3f ms%nthroughput: %.1f/s%nmean batch size: %.2f%nqueue length: %d%n",
+				batcher.getLatencyPercentile(50) / 1e6, batcher.getLatencyPercentile(99) / 1e6,
+				batcher.getThroughput(), batcher.getMeanBatchSize(), batcher.getQueueLength());
+	}
+	
+	
+	private void handlePredict(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, "Use POST\n");
+			return;
+		}
+		
+		List<CompletableFuture<double[]>> results = new ArrayList<CompletableFuture<double[]>>();
+		try {
+			for (String line : readBody(exchange.getRequestBody()).split("\n")) {
+				line = line.trim();
+				if (line.isEmpty()) continue;
+				results.add(batcher.submit(parseRow(line)));
+			}
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+			return;
+		}
+		
+		// Answer on the server's threads so that the batcher's worker never blocks on a slow client
+		CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).whenCompleteAsync((v, t) -> {
+			try {
+				if (t != null) {
+					respond(exchange, 500, t.getMessage() + "\n");
+					return;
+				}
+				StringBuilder body = new StringBuilder();
+				for (CompletableFuture<double[]> result : results) {
+					double[] row = result.join();
+					for (int i = 0; i < row.length; i++) {
+						if (i > 0) body.append(',');
+						body.append(row[i]);
+					}
+					body.append('\n');
+				}
+				respond(exchange, 200, body.toString());
+			} catch (IOException e) {
+				exchange.close();
+			}
+		}, executor);
+	}
+	
+	private void handleStats(HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, "Use GET\n");
+			return;
+		}
+		respond(exchange, 200, getStats());
+	}
+	
+	private static double[] parseRow(String line) {
+		String[] values = line.split("[,\\s]+");
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			try {
+				result[i] = Double.parseDouble(values[i]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Not a number: " + values[i]);
+			}
+		}
+		return result;
+	}
+	
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			result.write(buffer, 0, read);
+		}
+		return new String(result.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getAddress()", getAddress()).add("getBatcher()", getBatcher());
+		return builder;
+	}
+
+}
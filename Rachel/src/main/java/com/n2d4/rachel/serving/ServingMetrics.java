@@ -0,0 +1,23 @@
+package com.n2d4.rachel.serving;
+
+import com.n2d4.rachel.util.Exceptions;
+import com.n2d4.rachel.util.metrics.MetricsRegistry;
+
+/**
+ * Names of the metrics a {@link MicroBatcher} records into its {@link MetricsRegistry}. Timings are in nanoseconds.
+ */
+public final class ServingMetrics {
+	
+	public static final String LATENCY = "serve.latency";
+	public static final String QUEUE_WAIT = "serve.queue";
+	public static final String FORWARD = "serve.forward";
+	public static final String BATCH_SIZE = "serve.batch";
+	public static final String REQUESTS = "serve.requests";
+	public static final String BATCHES = "serve.batches";
+	public static final String FAILURES = "serve.failures";
+	
+	private ServingMetrics() {
+		Exceptions.privateConstructor();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.n2d4.rachel.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.DebugStringBuilder.Detail;
+
+/**
+ * A small logging surface for periodic debug output such as model dumps during training.
+ */
+public class DebugLog {
+	
+	private final PrintStream out;
+	private volatile Level level;
+	private final int sampleEvery;
+	private long calls = 0;
+	
+	public DebugLog(PrintStream out, Level level) {
+		this(out, level, 1);
+	}
+	
+	public DebugLog(PrintStream out, Level level, int sampleEvery) {
+		this.out = Requirements.nonNull(out, "output stream");
+		this.level = Requirements.nonNull(level, "level");
+		this.sampleEvery = Requirements.positive(sampleEvery, "sample every");
+	}
+	
+	
+	public Level getLevel() {
+		return level;
+	}
+	
+	public void setLevel(Level level) {
+		this.level = Requirements.nonNull(level, "level");
+	}
+	
+	public int getSampleEvery() {
+		return sampleEvery;
+	}
+	
+	public boolean isEnabled() {
+		return level != Level.OFF;
+	}
+	
+	/**
+	 * Returns whether the current call falls on the sampling rate. Every call counts, so this should be called exactly once per potential log block.
+	 */
+	public synchronized boolean sample() {
+		return isEnabled() && calls++ % sampleEvery == 0;
+	}
+	
+	
+	public void println() {
+		if (isEnabled()) out.println();
+	}
+	
+	public void println(Object obj) {
+		if (!isEnabled()) return;
+		
+		if (obj instanceof Debuggable) {
+			DebugStringBuilder builder = ((Debuggable) obj).buildDebugBuilder();
+			if (builder != null) {
+				try {
+					builder.writeTo(out, level.getDetail());
+				} catch (IOException e) {
+					// PrintStreams don't throw
+				}
+				out.println();
+				return;
+			}
+		}
+		out.println(obj);
+	}
+	
+	public void println(String title, Object obj) {
+		if (!isEnabled()) return;
+		
+		out.println(title);
+		println(obj);
+	}
+	
+	
+	
+	
+	public static enum Level {
+		OFF(null), SUMMARY(Detail.SUMMARY), FULL(Detail.FULL);
+		
+		private final Detail detail;
+		
+		private Level(Detail detail) {
+			this.detail = detail;
+		}
+		
+		public Detail getDetail() {
+			return detail;
+		}
+	}
+	
+}
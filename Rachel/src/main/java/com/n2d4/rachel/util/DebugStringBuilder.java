@@ -1,9 +1,14 @@
 package com.n2d4.rachel.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * A builder for readable JSON strings to be used in the <a href="http://www.example.com">debugging tool</a>.
@@ -11,6 +16,8 @@ import java.util.Map.Entry;
  * Use this in the {@link java.lang.Object#toString() .toString()} method of a class that implements {@link Util.Debuggable Debuggable}.
  * <p>
  * This class has been designed to work with Eclipse' "Generate .toString()" feature (menu bar > source).
+ * <p>
+ * Values are only converted when the builder is written, and nested {@link Debuggable Debuggables} that provide a {@link Debuggable#buildDebugBuilder() builder} are streamed into the same {@link Appendable} instead of being turned into strings first. Values added with {@link #addLazy(String, Supplier) addLazy(...)} or {@link #addDetailed(String, Supplier, Supplier) addDetailed(...)} are only computed at that point, too.
  * 
  * @see DebugStringBuilder.Debuggable
  */
@@ -25,8 +32,10 @@ public class DebugStringBuilder {
 		}
 	};
 	protected static final Map<Class<?>, DebugStringBuilderImplementation> customImplementations = getCustomImplementations();
+	private static final Map<String, String> cleanNames = new ConcurrentHashMap<String, String>();
+	private static volatile Detail defaultDetail = Detail.FULL;
 	
-	private Map<String, String> contents = new HashMap<String, String>();
+	private final Map<String, Object> contents = new LinkedHashMap<String, Object>();
 	
 	public DebugStringBuilder() {
 		add("_type", "Unknown", true);
@@ -42,7 +51,40 @@ public class DebugStringBuilder {
 		return add(name, obj, false);
 	}
 	
+	/**
+	 * Adds a value that will only be computed once the builder is written.
+	 */
+	public DebugStringBuilder addLazy(String name, Supplier<?> supplier) {
+		return addDetailed(name, supplier, supplier);
+	}
+	
+	/**
+	 * Adds a value that will only be computed once the builder is written, using the first supplier if the builder is written with {@link Detail#SUMMARY} and the second one otherwise.
+	 */
+	public DebugStringBuilder addDetailed(String name, Supplier<?> summary, Supplier<?> full) {
+		Requirements.nonNull(summary, "summary supplier");
+		Requirements.nonNull(full, "full supplier");
+		
+		contents.put(cleanName(name, false), new DetailedValue(summary, full));
+		return this;
+	}
+	
 	protected DebugStringBuilder add(String name, Object obj, boolean forceName) {
+		contents.put(cleanName(name, forceName), obj);
+		return this;
+	}
+	
+	private String cleanName(String name, boolean forceName) {
+		String key = forceName ? "\0" + name : name;
+		String result = cleanNames.get(key);
+		if (result == null) {
+			result = computeCleanName(name, forceName);
+			cleanNames.put(key, result);
+		}
+		return result;
+	}
+	
+	private String computeCleanName(String name, boolean forceName) {
 		name = ugly_case(name);
 		name = jsonify(name.replaceAll("_+", "_"));
 		
@@ -68,9 +110,7 @@ public class DebugStringBuilder {
 			}
 		}
 		
-		
-		contents.put(name, getJSONValue(obj));
-		return this;
+		return name;
 	}
 	
 	protected static String getJSONValue(Object obj) {
@@ -97,6 +137,12 @@ public class DebugStringBuilder {
 		}
 	}
 	
+	private static boolean isNonFinite(Object obj) {
+		if (obj instanceof Double) return !Double.isFinite((Double) obj);
+		if (obj instanceof Float) return !Float.isFinite((Float) obj);
+		return false;
+	}
+	
 	protected static final String jsonify(String s) {
 		return s.replaceAll("\\\\", "\\\\\\\\").replaceAll("\"", "\\\"").replaceAll("\n", "\\\\n");
 	}
@@ -109,18 +155,100 @@ public class DebugStringBuilder {
 	}
 	
 	
-	@Override
-	public String toString() {
-		String result = "";
-		Iterator<String> iterator = contents.keySet().iterator();
-		while (iterator.hasNext()) {
-			String next = iterator.next();
-			result += "\"" + next + "\": " + contents.get(next);
-			if (iterator.hasNext())
-				result += ", ";
+	protected static void writeJSONString(Appendable out, String s) throws IOException {
+		out.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"': out.append("\\\""); break;
+			case '\\': out.append("\\\\"); break;
+			case '\n': out.append("\\n"); break;
+			case '\r': out.append("\\r"); break;
+			case '\t': out.append("\\t"); break;
+			default: out.append(c);
+			}
+		}
+		out.append('"');
+	}
+	
+	protected static void writeJSONValue(Appendable out, Object obj, Detail detail) throws IOException {
+		if (obj instanceof DetailedValue) obj = ((DetailedValue) obj).get(detail);
+		if (obj == null) {
+			out.append("null");
+			return;
+		}
+		if (obj instanceof DebugStringBuilder) {
+			((DebugStringBuilder) obj).writeTo(out, detail);
+			return;
 		}
 		
-		return "{" + result + "}";
+		DebugStringBuilderImplementation implementation = getStringBuilderImplementation(obj);
+		if (implementation == DebugStringBuilderImplementation.DEBUGGABLE && obj instanceof Debuggable) {
+			DebugStringBuilder nested = ((Debuggable) obj).buildDebugBuilder();
+			if (nested != null) nested.writeTo(out, detail);
+			else out.append(obj.toString());
+		} else if (implementation == DebugStringBuilderImplementation.ITERABLES) {
+			Iterator<?> iterator = Iterables.iterator(obj);
+			out.append('[');
+			boolean k = false;
+			while (iterator.hasNext()) {
+				if (k) out.append(", ");
+				else k = true;
+				writeJSONValue(out, iterator.next(), detail);
+			}
+			out.append(']');
+		} else if (implementation == DebugStringBuilderImplementation.DEFAULT) {
+			writeJSONString(out, obj.toString());
+		} else {
+			out.append(implementation.getForObject(obj));
+		}
+	}
+	
+	
+	/**
+	 * Writes the JSON representation directly into the given Appendable, using the default {@link Detail detail}.
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		writeTo(out, getDefaultDetail());
+	}
+	
+	public void writeTo(Appendable out, Detail detail) throws IOException {
+		Requirements.nonNull(out, "output");
+		Requirements.nonNull(detail, "detail");
+		
+		out.append('{');
+		boolean k = false;
+		for (Entry<String, Object> entry : contents.entrySet()) {
+			if (k) out.append(", ");
+			else k = true;
+			out.append('"').append(entry.getKey()).append("\": ");
+			writeJSONValue(out, entry.getValue(), detail);
+		}
+		out.append('}');
+	}
+	
+	public String toString(Detail detail) {
+		StringBuilder result = new StringBuilder();
+		try {
+			writeTo(result, detail);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);		// StringBuilder never throws
+		}
+		return result.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return toString(getDefaultDetail());
+	}
+	
+	
+	public static Detail getDefaultDetail() {
+		return defaultDetail;
+	}
+	
+	public static void setDefaultDetail(Detail detail) {
+		defaultDetail = Requirements.nonNull(detail, "detail");
 	}
 	
 	
@@ -135,13 +263,46 @@ public class DebugStringBuilder {
 	 */
 	public static interface Debuggable {
 		public String toString();
+		
+		/**
+		 * Returns the builder this object's {@link #toString() .toString()} is based on, or null if there is none. Builders returned here are streamed when nested inside other builders.
+		 */
+		public default DebugStringBuilder buildDebugBuilder() {
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * How much of large values (such as tensors) is written.
+	 */
+	public static enum Detail {
+		SUMMARY, FULL
+	}
+	
+	
+	private static final class DetailedValue {
+		private final Supplier<?> summary;
+		private final Supplier<?> full;
+		
+		DetailedValue(Supplier<?> summary, Supplier<?> full) {
+			this.summary = summary;
+			this.full = full;
+		}
+		
+		Object get(Detail detail) {
+			return (detail == Detail.SUMMARY ? summary : full).get();
+		}
 	}
 	
 	
 	public static interface DebugStringBuilderImplementation {
 		public String getForObject(Object obj);
 		
-		public static final DebugStringBuilderImplementation DEBUGGABLE = (a) -> a.toString();
+		/**
+		 * Writes numbers and booleans as they are, except for NaN and infinite values, which JSON cannot represent as numbers and are written as the strings {@code "NaN"}, {@code "Infinity"} and {@code "-Infinity"} instead.
+		 */
+		public static final DebugStringBuilderImplementation DEBUGGABLE = (a) -> isNonFinite(a) ? "\"" + a + "\"" : a.toString();
 		public static final DebugStringBuilderImplementation CLASSES = (a) -> "\"" + jsonify(((Class<?>) a).getName()) + "\"";
 		public static final DebugStringBuilderImplementation ITERABLES = new DebugStringBuilderImplementation() {
 			@Override public String getForObject(Object obj) {
@@ -0,0 +1,132 @@
+package com.n2d4.rachel.util;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out independent, reproducible random number streams, all derived from a single master seed, one per thread.
+ * <p>
+ * The master seed is read from the {@code rachel.seed} system property if it is present; otherwise, it is chosen randomly on startup.
+ */
+public final class RandomStreams {
+	
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	private static volatile long masterSeed = Long.getLong("rachel.seed", System.nanoTime() ^ System.currentTimeMillis() * GOLDEN_GAMMA);
+	private static volatile int generation = 0;
+	private static final AtomicLong nextThreadStream = new AtomicLong();
+	private static final ThreadLocal<ThreadStream> threadStream = new ThreadLocal<ThreadStream>();
+	
+	private RandomStreams() {
+		Exceptions.privateConstructor();
+	}
+	
+	
+	public static long getMasterSeed() {
+		return masterSeed;
+	}
+	
+	/**
+	 * Sets the master seed and restarts stream assignment from 0. Every thread's stream is re-derived the next time it draws from {@link #current()}: threads {@link #bindCurrentThread(long) bound} to a stream keep their stream ID and start it over from the new seed, all others are assigned new IDs in the order they draw.
+	 */
+	public static synchronized void setMasterSeed(long seed) {
+		masterSeed = seed;
+		nextThreadStream.set(0);
+		generation++;
+	}
+	
+	/**
+	 * Returns the calling thread's random stream. The returned object must not be shared with other threads.
+	 */
+	public static Random current() {
+		ThreadStream stream = threadStream.get();
+		int current = generation;
+		if (stream == null || stream.generation != current) {
+			boolean bound = stream != null && stream.bound;
+			stream = new ThreadStream(current, bound ? stream.streamId : nextThreadStream.getAndIncrement(), bound);
+			threadStream.set(stream);
+		}
+		return stream.random;
+	}
+	
+	/**
+	 * Binds the calling thread to the stream with the given ID, starting it over from the beginning. The binding survives {@link #setMasterSeed(long) reseeding}.
+	 */
+	public static void bindCurrentThread(long streamId) {
+		threadStream.set(new ThreadStream(generation, streamId, true));
+	}
+	
+	/**
+	 * Creates a new Random that produces the stream with the given ID, independent of any thread.
+	 */
+	public static Random get(long streamId) {
+		return new StreamRandom(derive(masterSeed, streamId));
+	}
+	
+	private static SplittableRandom derive(long masterSeed, long streamId) {
+		// split() gives every stream its own gamma rather than just an offset into a shared sequence
+		return new SplittableRandom(masterSeed + streamId * GOLDEN_GAMMA).split();
+	}
+	
+	
+	
+	private static final class ThreadStream {
+		private final int generation;
+		private final long streamId;
+		private final boolean bound;
+		private final Random random;
+		
+		private ThreadStream(int generation, long streamId, boolean bound) {
+			this.generation = generation;
+			this.streamId = streamId;
+			this.bound = bound;
+			this.random = get(streamId);
+		}
+	}
+	
+	/**
+	 * Adapts a {@link SplittableRandom} to the {@link Random} interface. Unlike Random, it does not synchronize and is therefore only safe to use from a single thread.
+	 */
+	private static final class StreamRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		private final SplittableRandom random;
+		private boolean locked = false;
+		
+		private StreamRandom(SplittableRandom random) {
+			super(0);
+			this.random = random;
+			locked = true;
+		}
+		
+		@Override public void setSeed(long seed) {
+			if (locked) throw new UnsupportedOperationException("Can't change the seed of a random stream; use RandomStreams.setMasterSeed instead.");
+			super.setSeed(seed);
+		}
+		
+		@Override protected int next(int bits) {
+			return random.nextInt() >>> (32 - bits);
+		}
+		
+		@Override public int nextInt() {
+			return random.nextInt();
+		}
+		
+		@Override public int nextInt(int bound) {
+			return random.nextInt(bound);
+		}
+		
+		@Override public long nextLong() {
+			return random.nextLong();
+		}
+		
+		@Override public double nextDouble() {
+			return random.nextDouble();
+		}
+		
+		@Override public boolean nextBoolean() {
+			return random.nextBoolean();
+		}
+	}
+	
+}
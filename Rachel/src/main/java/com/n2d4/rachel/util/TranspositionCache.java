@@ -0,0 +1,149 @@
+package com.n2d4.rachel.util;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+
+/**
+ * A bounded, direct-mapped cache of position ratings keyed by hashes, in the style of a transposition table.
+ * <p>
+ * Entries carry a version, usually the iteration count of the network that rated them, and only match lookups of the same version.
+ */
+public class TranspositionCache implements Debuggable {
+	
+	public static final int DEFAULT_STRIPE_COUNT = 16;
+	
+	private final long[] keys;
+	private final long[] versions;
+	private final double[] values;
+	private final boolean[] used;
+	private final Object[] locks;
+	private final int mask;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	public TranspositionCache(int capacity) {
+		this(capacity, DEFAULT_STRIPE_COUNT);
+	}
+	
+	/**
+	 * Both the capacity and the stripe count are rounded up to powers of two.
+	 */
+	public TranspositionCache(int capacity, int stripeCount) {
+		Requirements.positive(capacity, "capacity");
+		Requirements.positive(stripeCount, "stripe count");
+		Requirements.smallerOrEqual(capacity, 1 << 30, "capacity");
+		
+		int size = toPowerOfTwo(capacity);
+		this.keys = new long[size];
+		this.versions = new long[size];
+		this.values = new double[size];
+		this.used = new boolean[size];
+		this.mask = size - 1;
+		
+		int stripes = Math.min(size, toPowerOfTwo(stripeCount));
+		this.locks = new Object[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new Object();
+		}
+	}
+	
+	
+	public int getCapacity() {
+		return keys.length;
+	}
+	
+	public int getStripeCount() {
+		return locks.length;
+	}
+	
+	/**
+	 * Returns how often a lookup found its rating, which is the amount of ratings that did not have to be computed.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Returns the share of lookups that found their rating, or 0 if there were none.
+	 */
+	public double getHitRate() {
+		long h = getHits();
+		long total = h + getMisses();
+		return total == 0 ? 0 : (double) h / total;
+	}
+	
+	/**
+	 * Returns the rating of the given key and version, computing and storing it if it is not cached.
+	 */
+	public double get(long key, long version, DoubleSupplier rating) {
+		Requirements.nonNull(rating, "rating");
+		
+		int slot = getSlot(key);
+		Object lock = locks[slot & (locks.length - 1)];
+		synchronized (lock) {
+			if (used[slot] && keys[slot] == key && versions[slot] == version) {
+				hits.increment();
+				return values[slot];
+			}
+		}
+		
+		misses.increment();
+		double value = rating.getAsDouble();
+		synchronized (lock) {
+			keys[slot] = key;
+			versions[slot] = version;
+			values[slot] = value;
+			used[slot] = true;
+		}
+		return value;
+	}
+	
+	/**
+	 * Removes every entry and resets the hit and miss counts.
+	 */
+	public void clear() {
+		for (int stripe = 0; stripe < locks.length; stripe++) {
+			synchronized (locks[stripe]) {
+				for (int i = stripe; i < used.length; i += locks.length) {
+					used[i] = false;
+				}
+			}
+		}
+		hits.reset();
+		misses.reset();
+	}
+	
+	private int getSlot(long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+	
+	private static int toPowerOfTwo(int n) {
+		int result = 1;
+		while (result < n) {
+			result <<= 1;
+		}
+		return result;
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getCapacity()", getCapacity()).add("getHits()", getHits())
+				.add("getMisses()", getMisses()).add("getHitRate()", getHitRate());
+		return builder;
+	}
+
+}
@@ -13,34 +13,17 @@ import java.util.Set;
  */
 public class Util {
 	
-	private static final Random random = new N2Random();
-	
 	private Util() {
 		Exceptions.privateConstructor();
 	}
 	
 	/**
-	 * Returns a static {@link java.util.Random Random} object with a fixed seed. Attempting to modify the seed will throw a runtime exception.
+	 * Returns the calling thread's {@link java.util.Random Random} stream, as given by {@link RandomStreams#current()}. The returned object is not thread-safe and must not be shared with other threads. Attempting to modify the seed will throw a runtime exception.
 	 * 
-	 * @return a static Random object.
+	 * @return the current thread's Random object.
 	 */
 	public static Random getRandom() {
-		return random;
-	}
-	
-	private static class N2Random extends Random {
-		private static final long serialVersionUID = 1L;
-		private boolean locked = false;
-		
-		protected N2Random() {
-			super();
-			locked = true;
-		}
-		
-		@Override synchronized public void setSeed(long seed) {
-			if (locked) throw new UnsupportedOperationException("Can't change the seed of a Random object created by N2D4's Util class.");
-			super.setSeed(seed);
-	    }
+		return RandomStreams.current();
 	}
 	
 	
@@ -0,0 +1,79 @@
+package com.n2d4.rachel.util.math;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * The decomposition of a symmetric positive definite matrix A into L L<sup>T</sup>, where L is lower triangular. Used to solve linear systems with A.
+ */
+public class CholeskyDecomposition {
+	
+	private final double[][] lower;
+	
+	/**
+	 * Decomposes the given matrix. Only its lower triangle is read.
+	 * 
+	 * @param matrix the matrix.
+	 * @throws IllegalStateException if the matrix is not positive definite.
+	 */
+	public CholeskyDecomposition(INDArray matrix) {
+		Requirements.nonNull(matrix, "matrix");
+		Requirements.equal(matrix.columns(), matrix.rows(), "matrix column count");
+		
+		int n = matrix.rows();
+		lower = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				double sum = matrix.getDouble(i, j);
+				for (int k = 0; k < j; k++) {
+					sum -= lower[i][k] * lower[j][k];
+				}
+				if (i == j) {
+					if (!(sum > 0)) throw new IllegalStateException("Matrix is not positive definite");
+					lower[i][i] = Math.sqrt(sum);
+				} else {
+					lower[i][j] = sum / lower[j][j];
+				}
+			}
+		}
+	}
+	
+	public int getSize() {
+		return lower.length;
+	}
+	
+	/**
+	 * Solves A X = B for X by forward and back substitution.
+	 * 
+	 * @param rhs the matrix B, with one column per system.
+	 * @return the matrix X.
+	 */
+	public INDArray solve(INDArray rhs) {
+		Requirements.nonNull(rhs, "right-hand side");
+		Requirements.equal(rhs.rows(), getSize(), "right-hand side row count");
+		
+		int n = getSize();
+		INDArray result = Nd4j.create(n, rhs.columns());
+		double[] z = new double[n];
+		for (int c = 0; c < rhs.columns(); c++) {
+			for (int i = 0; i < n; i++) {
+				double sum = rhs.getDouble(i, c);
+				for (int k = 0; k < i; k++) {
+					sum -= lower[i][k] * z[k];
+				}
+				z[i] = sum / lower[i][i];
+			}
+			for (int i = n - 1; i >= 0; i--) {
+				double sum = z[i];
+				for (int k = i + 1; k < n; k++) {
+					sum -= lower[k][i] * result.getDouble(k, c);
+				}
+				result.putScalar(i, c, sum / lower[i][i]);
+			}
+		}
+		return result;
+	}
+
+}
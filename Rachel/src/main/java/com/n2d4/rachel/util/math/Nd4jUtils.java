@@ -35,6 +35,37 @@ public class Nd4jUtils {
 		return result;
 	}
 	
+	/**
+	 * Returns the logarithm of a single value, where negative infinity is replaced by the smallest finite value. Same as {@link #zLog(INDArray)}, but for scalars.
+	 * 
+	 * @param x the value.
+	 * @return the result.
+	 */
+	public static double zLog(double x) {
+		double result = Math.log(x);
+		return result == Double.NEGATIVE_INFINITY ? -Double.MAX_VALUE : result;
+	}
+	
+	/**
+	 * Returns whether the array is laid out contiguously at the start of its own buffer, so that its elements can be read and written through {@link INDArray#data()} in order.
+	 * 
+	 * @param arr the array.
+	 * @return whether the array is dense.
+	 */
+	public static boolean isDense(INDArray arr) {
+		return !arr.isView() && arr.offset() == 0 && arr.data().length() == arr.length();
+	}
+	
+	/**
+	 * Returns a summary of the array holding its shape, norm, minimum and maximum. The summary is computed immediately and does not keep a reference to the array.
+	 * 
+	 * @param arr the array.
+	 * @return the summary.
+	 */
+	public static TensorSummary summarize(INDArray arr) {
+		return new TensorSummary(arr);
+	}
+	
 	/**
 	 * Returns the maximum value for a given type.
 	 * 
@@ -0,0 +1,61 @@
+package com.n2d4.rachel.util.math;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * A short description of an {@link INDArray} consisting of its shape, L2 norm, minimum and maximum, used in place of the full array when debug output is written with {@link DebugStringBuilder.Detail#SUMMARY summary detail}.
+ * 
+ * @see Nd4jUtils#summarize(INDArray)
+ */
+public final class TensorSummary implements Debuggable {
+	
+	private final int[] shape;
+	private final double norm;
+	private final double min;
+	private final double max;
+	
+	TensorSummary(INDArray arr) {
+		Requirements.nonNull(arr, "array");
+		
+		this.shape = arr.shape();
+		boolean empty = arr.length() == 0;
+		this.norm = empty ? 0 : arr.norm2Number().doubleValue();
+		this.min = empty ? Double.NaN : arr.minNumber().doubleValue();
+		this.max = empty ? Double.NaN : arr.maxNumber().doubleValue();
+	}
+	
+	
+	public int[] getShape() {
+		return shape;
+	}
+	
+	public double getNorm() {
+		return norm;
+	}
+	
+	public double getMin() {
+		return min;
+	}
+	
+	public double getMax() {
+		return max;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getShape()", getShape()).add("getNorm()", getNorm()).add("getMin()", getMin()).add("getMax()", getMax());
+		return builder;
+	}
+	
+}
@@ -0,0 +1,39 @@
+package com.n2d4.rachel.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing counter that can be updated from many threads without contention.
+ */
+public final class Counter {
+	
+	private final LongAdder count = new LongAdder();
+	
+	Counter() {
+		
+	}
+	
+	
+	public void increment() {
+		count.increment();
+	}
+	
+	public void add(long amount) {
+		count.add(amount);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	void reset() {
+		count.reset();
+	}
+	
+	
+	@Override
+	public String toString() {
+		return Long.toString(getCount());
+	}
+	
+}
@@ -0,0 +1,127 @@
+package com.n2d4.rachel.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * A lock-free histogram of non-negative long values in the style of HdrHistogram, with a relative error of at most 1/{@value #SUB_BUCKET_COUNT}.
+ */
+public final class Histogram implements Debuggable {
+	
+	public static final int SUB_BUCKET_BITS = 5;
+	public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+	
+	Histogram() {
+		
+	}
+	
+	
+	public void record(long value) {
+		if (value < 0) value = 0;
+		
+		buckets.incrementAndGet(getBucketIndex(value));
+		count.increment();
+		sum.add(value);
+		
+		long cur;
+		while (value < (cur = min.get()) && !min.compareAndSet(cur, value));
+		while (value > (cur = max.get()) && !max.compareAndSet(cur, value));
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	public double getMean() {
+		long c = getCount();
+		return c == 0 ? 0 : getSum() / (double) c;
+	}
+	
+	public long getMin() {
+		return getCount() == 0 ? 0 : min.get();
+	}
+	
+	public long getMax() {
+		return getCount() == 0 ? 0 : max.get();
+	}
+	
+	/**
+	 * Returns the value at the given percentile, accurate to the histogram's bucket resolution.
+	 * 
+	 * @param percentile the percentile, between 0 and 100
+	 */
+	public long getPercentile(double percentile) {
+		Requirements.throwErrorIf(!(percentile >= 0 && percentile <= 100), Requirements.FormatStrings.mustBe, "percentile", "between 0 and 100");
+		
+		long total = getCount();
+		if (total == 0) return 0;
+		
+		long target = Math.max(1, (long) Math.ceil(total * percentile / 100d));
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= target) return Math.min(getBucketUpperBound(i), getMax());
+		}
+		return getMax();
+	}
+	
+	void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+	
+	
+	private static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) return (int) value;
+		
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);		// position of the highest bit, at least SUB_BUCKET_BITS
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+	
+	private static long getBucketUpperBound(int index) {
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		if (shift < 0) return subBucket;
+		
+		long lower = (SUB_BUCKET_COUNT | subBucket) << shift;
+		return lower + (1L << shift) - 1;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getCount()", getCount()).add("getMean()", getMean()).add("getMin()", getMin())
+				.addLazy("p50", () -> getPercentile(50)).addLazy("p90", () -> getPercentile(90))
+				.addLazy("p99", () -> getPercentile(99)).add("getMax()", getMax());
+		return builder;
+	}
+	
+}
@@ -0,0 +1,175 @@
+package com.n2d4.rachel.util.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * A named collection of {@link Counter Counters} and {@link Histogram Histograms}. While disabled, recording costs no more than a volatile read.
+ */
+public class MetricsRegistry implements Debuggable {
+	
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	
+	private final Map<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	private volatile boolean enabled;
+	private volatile long resetTime = System.nanoTime();
+	private ScheduledExecutorService dumper;
+	
+	public MetricsRegistry() {
+		this(true);
+	}
+	
+	public MetricsRegistry(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	public Counter getCounter(String name) {
+		Requirements.nonNull(name, "name");
+		return counters.computeIfAbsent(name, (n) -> new Counter());
+	}
+	
+	public Histogram getHistogram(String name) {
+		Requirements.nonNull(name, "name");
+		return histograms.computeIfAbsent(name, (n) -> new Histogram());
+	}
+	
+	public Map<String, Counter> getCounters() {
+		return Collections.unmodifiableMap(new TreeMap<String, Counter>(counters));
+	}
+	
+	public Map<String, Histogram> getHistograms() {
+		return Collections.unmodifiableMap(new TreeMap<String, Histogram>(histograms));
+	}
+	
+	/**
+	 * Returns the counter's value per second since this registry was created or last reset.
+	 */
+	public double getRate(String counter) {
+		double seconds = (System.nanoTime() - resetTime) / 1_000_000_000d;
+		return seconds <= 0 ? 0 : getCounter(counter).getCount() / seconds;
+	}
+	
+	public void reset() {
+		for (Counter counter : counters.values()) counter.reset();
+		for (Histogram histogram : histograms.values()) histogram.reset();
+		resetTime = System.nanoTime();
+	}
+	
+	
+	
+	/**
+	 * Returns the current time in nanoseconds to be passed to {@link #stop(String, long)}, or 0 if the registry is disabled.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Records the nanoseconds passed since the given {@link #start()} time into the named histogram.
+	 */
+	public void stop(String name, long started) {
+		if (started == 0 || !enabled) return;
+		getHistogram(name).record(System.nanoTime() - started);
+	}
+	
+	/**
+	 * Like {@link #stop(String, long)}, but appends the index to the name. The name is only built if the registry is enabled.
+	 */
+	public void stop(String name, int index, long started) {
+		if (started == 0 || !enabled) return;
+		stop(name + index, started);
+	}
+	
+	public void record(String name, long value) {
+		if (!enabled) return;
+		getHistogram(name).record(value);
+	}
+	
+	public void increment(String name, long amount) {
+		if (!enabled) return;
+		getCounter(name).add(amount);
+	}
+	
+	/**
+	 * Returns the amount of bytes the current thread has allocated so far, or 0 if the registry is disabled or the JVM does not support allocation tracking.
+	 */
+	public long getAllocatedBytes() {
+		if (!enabled) return 0;
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return 0;
+		
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+		if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) return 0;
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	
+	
+	/**
+	 * Prints this registry to the given stream at a fixed rate from a daemon thread, until {@link #stopDumping()} is called.
+	 */
+	public synchronized void startDumping(PrintStream out, long period, TimeUnit unit) {
+		Requirements.nonNull(out, "output stream");
+		Requirements.nonNull(unit, "time unit");
+		Requirements.throwErrorIf(period <= 0, Requirements.FormatStrings.mustBe, "period", "positive");
+		
+		stopDumping();
+		dumper = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread thread = new Thread(r, "Metrics dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> out.println(this), period, period, unit);
+	}
+	
+	public synchronized void stopDumping() {
+		if (dumper == null) return;
+		dumper.shutdownNow();
+		dumper = null;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		DebugStringBuilder counterBuilder = new DebugStringBuilder();
+		for (Entry<String, Counter> entry : getCounters().entrySet()) {
+			counterBuilder.add(entry.getKey(), entry.getValue().getCount());
+		}
+		DebugStringBuilder histogramBuilder = new DebugStringBuilder();
+		for (Entry<String, Histogram> entry : getHistograms().entrySet()) {
+			histogramBuilder.add(entry.getKey(), entry.getValue());
+		}
+		
+		builder.add("isEnabled()", isEnabled()).add("getCounters()", counterBuilder).add("getHistograms()", histogramBuilder);
+		return builder;
+	}
+	
+}
@@ -33,9 +33,14 @@ public class AbstractLayerOutputSet<I extends InputSet, O extends OutputSet> imp
 	
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getInputSet()", getInputSet()).add("getOutputSet()", getOutputSet());
-		return builder.toString();
+		return builder;
 	}
 	
 }
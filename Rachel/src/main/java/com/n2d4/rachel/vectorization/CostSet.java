@@ -24,13 +24,17 @@ public class CostSet extends VectorizedData {
 		return this.getColumnCount();
 	}
 	
+	public double getSum() {
+		return getValues().sumNumber().doubleValue();
+	}
+	
 	public double getRMS() {
 		return Math.sqrt(Transforms.pow(getValues(), 2).meanNumber().doubleValue());
 	}
 	
 	@Override
 	public DebugStringBuilder buildDebugBuilder() {
-		return super.buildDebugBuilder().add("getRMS()", getRMS());
+		return super.buildDebugBuilder().addLazy("getRMS()", this::getRMS);
 	}
 	
 }
@@ -20,6 +20,17 @@ public class InputSet extends SupervisedSet implements InputValueSet {
 	public InputSet(INDArray data) {
 		super(data);
 	}
+	
+	protected InputSet(INDArray data, boolean copy) {
+		super(data, copy);
+	}
+	
+	/**
+	 * Wraps the given array without copying it. Changes to the array show in the returned set.
+	 */
+	public static InputSet view(INDArray data) {
+		return new InputSet(data, false);
+	}
 
 	@Override
 	public int getInputCount() {
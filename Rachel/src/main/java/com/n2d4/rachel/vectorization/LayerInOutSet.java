@@ -30,8 +30,13 @@ public class LayerInOutSet implements InOutSet<LayerInputSet, LayerOutputSet>, S
 
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getInputSet()", getInputSet()).add("getOutputSet()", getOutputSet());
-		return builder.toString();
+		return builder;
 	}
 }
@@ -1,5 +1,7 @@
 package com.n2d4.rachel.vectorization;
 
+import java.util.Arrays;
+
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
@@ -11,37 +13,120 @@ public final class LayerInputSet extends LayerSet implements InputValueSet {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	private final SparseInputSet sparseInput;
+	private final int[] activeColumns;
+	private final INDArray activeColumnSelection;
+	private volatile INDArray denseValues;
 
-	private LayerInputSet(ValueSet set, boolean _PRIVATE_) {
-		super(addLeadingOnes(set));
+	private LayerInputSet(ValueSet set, SparseInputSet sparseInput) {
+		super(sparseInput != null ? VectorizedData.getINDArray(sparseInput) : addLeadingOnes(set), false);
+		this.sparseInput = sparseInput;
+		this.activeColumns = sparseInput != null ? findActiveColumns(sparseInput) : null;
+		this.activeColumnSelection = sparseInput != null ? createActiveColumnSelection(sparseInput, activeColumns) : null;
 	}
 
 	public LayerInputSet(InputSet set) {
-		this(set, true);
+		this(set, set instanceof SparseInputSet ? (SparseInputSet) set : null);
 	}
 
 	public LayerInputSet(LayerOutputSet set) {
-		this(set, true);
+		this(set, null);
 	}
 
 	public int getInputSize() {
 		return super.getSetSize() - 1;
 	}
 	
+	/**
+	 * Returns whether the active inputs of every set are known, which is the case if this layer input was created from a {@link SparseInputSet}.
+	 * <p>
+	 * The dense values of a sparse layer input, including the leading ones, are only built once something asks for them.
+	 */
+	public boolean isSparse() {
+		return sparseInput != null;
+	}
+	
+	/**
+	 * Returns the columns that are non-zero in at least one set, in ascending order. The leading one is always the first of them. Only available if this set {@link #isSparse() is sparse}.
+	 */
+	public int[] getActiveColumns() {
+		return activeColumns.clone();
+	}
+	
+	/**
+	 * Returns this set restricted to its {@link #getActiveColumns() active columns}: a matrix with one row per set and one column per active column, which is 1 where the set has that input and 0 otherwise. Multiplying it with the weight rows of the active columns gives the same result as multiplying the dense values with all weights. Only available if this set {@link #isSparse() is sparse}.
+	 */
+	public INDArray getActiveColumnSelection() {
+		return activeColumnSelection;
+	}
+	
+	@Override
+	protected INDArray getValues() {
+		if (sparseInput == null) return super.getValues();
+		
+		INDArray result = denseValues;
+		if (result == null) {
+			synchronized (this) {
+				result = denseValues;
+				if (result == null) denseValues = result = addLeadingOnes(sparseInput);
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	protected int getSize(int dimension) {
+		int size = super.getSize(dimension);
+		return sparseInput != null && dimension == 1 ? size + 1 : size;
+	}
+	
+	private static int[] findActiveColumns(SparseInputSet set) {
+		int total = 0;
+		for (int i = 0; i < set.getSetCount(); i++) {
+			total += set.getActiveCount(i);
+		}
+		
+		int[] all = new int[total + 1];
+		int count = 1;
+		for (int i = 0; i < set.getSetCount(); i++) {
+			for (int j = 0; j < set.getActiveCount(i); j++) {
+				all[count++] = set.getActiveIndex(i, j) + 1;
+			}
+		}
+		Arrays.sort(all);
+		
+		int unique = 0;
+		for (int i = 0; i < all.length; i++) {
+			if (i == 0 || all[i] != all[i - 1]) all[unique++] = all[i];
+		}
+		return Arrays.copyOf(all, unique);
+	}
+	
+	private static INDArray createActiveColumnSelection(SparseInputSet set, int[] activeColumns) {
+		int rows = set.getSetCount();
+		int columns = activeColumns.length;
+		double[] selection = new double[rows * columns];
+		for (int i = 0; i < rows; i++) {
+			selection[i * columns] = 1;
+			for (int j = 0; j < set.getActiveCount(i); j++) {
+				selection[i * columns + Arrays.binarySearch(activeColumns, set.getActiveIndex(i, j) + 1)] = 1;
+			}
+		}
+		return Nd4j.create(selection, new int[] {rows, columns}, 'c');
+	}
+	
 	protected static final INDArray addLeadingOnes(ValueSet set) {
 		INDArray ones = Nd4j.ones(set.getSetCount(), 1);
 		return Nd4j.concat(1, ones, VectorizedData.getINDArray(set));
 	}
-
+	
 	@Override
 	public int getInputCount() {
 		return getSetSize();
 	}
 	
 	public LayerInputDerivative getLayerInputSetDerivative() {
-		int[] shape = getValues().shape();
-		shape[1]--;
-		return new LayerInputDerivative(Nd4j.ones(shape));
+		return new LayerInputDerivative(Nd4j.ones(getSetCount(), getInputSize()));
 	}
 	
 	public boolean hasIgnorableDerivative() {
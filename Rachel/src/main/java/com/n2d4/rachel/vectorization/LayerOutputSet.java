@@ -8,9 +8,25 @@ public class LayerOutputSet extends SkeletalLayerOutputSet {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	private final INDArray logValues;
 
 	public LayerOutputSet(INDArray data) {
+		this(data, null);
+	}
+	
+	/**
+	 * @param logValues the natural logarithms of the values, computed more precisely than taking the logarithm of the values would; may be null
+	 */
+	public LayerOutputSet(INDArray data, INDArray logValues) {
 		super(data);
+		this.logValues = logValues;
+	}
+	
+	/**
+	 * Returns the natural logarithms of the values if the activation function computed them, or null otherwise.
+	 */
+	public INDArray getLogValues() {
+		return logValues;
 	}
 
 }
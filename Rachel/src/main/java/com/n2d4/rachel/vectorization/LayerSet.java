@@ -12,5 +12,9 @@ public abstract class LayerSet extends ValueSet {
 	protected LayerSet(INDArray data) {
 		super(data);
 	}
+	
+	protected LayerSet(INDArray data, boolean copy) {
+		super(data, copy);
+	}
 
 }
@@ -1,67 +1,305 @@
 package com.n2d4.rachel.vectorization;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import com.n2d4.rachel.util.Requirements;
 
+/**
+ * A ring buffer of the latest {@link #getSetCount()} sets added to it, which any amount of threads may add to without locking.
+ * <p>
+ * The training, validation and test sets are consistent snapshots of the buffer and must not be modified. Training sets are only valid until two more snapshots were taken.
+ */
 public class OnlineDataSet implements ContinuousDataSet {
 	
+	private static final int ALL_OUTPUTS = -1;
+	
 	private final int setCount;
-	private final InputSet inputSet;
-	private final OutputSet outputSet;
-	private int counter = 0;
+	private final int inputSize;
+	private final int outputSize;
+	private final boolean sparse;
+	private final AtomicLongArray inputs;
+	private final AtomicLongArray outputs;
+	private final AtomicIntegerArray activeOutputs;
+	private final AtomicReferenceArray<int[]> activeInputs;
+	private final AtomicLongArray stamps;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private volatile Snapshot snapshot;
+	private Snapshot spare;
 	
 	public OnlineDataSet(int inputSize, int outputSize, int setCount) {
-		this.setCount = setCount;
+		this(inputSize, outputSize, setCount, false);
+	}
+	
+	/**
+	 * @param sparse whether every input consists of zeros and ones only, making the snapshots {@link SparseInputSet}s; the active indices of every set are recorded when it is added
+	 */
+	public OnlineDataSet(int inputSize, int outputSize, int setCount, boolean sparse) {
+		this.inputSize = Requirements.positive(inputSize, "input size");
+		this.outputSize = Requirements.positive(outputSize, "output size");
+		this.setCount = Requirements.positive(setCount, "set count");
+		this.sparse = sparse;
 		
-		inputSet = new InputSet(Nd4j.randn(getSetCount(), inputSize));
-		outputSet = new OutputSet(Nd4j.randn(getSetCount(), outputSize));
+		inputs = new AtomicLongArray(setCount * inputSize);
+		if (!sparse) fillRandom(inputs);
+		outputs = new AtomicLongArray(setCount * outputSize);
+		fillRandom(outputs);
+		activeOutputs = new AtomicIntegerArray(setCount);
+		for (int i = 0; i < setCount; i++) {
+			activeOutputs.set(i, ALL_OUTPUTS);
+		}
+		activeInputs = sparse ? new AtomicReferenceArray<int[]>(setCount) : null;
+		if (sparse) {
+			for (int i = 0; i < setCount; i++) {
+				activeInputs.set(i, new int[0]);
+			}
+		}
+		stamps = new AtomicLongArray(setCount);
 	}
 	
 	@Override public TrainingSet getTrainingSet() {
-		return new TrainingSet(inputSet, outputSet);
+		return new TrainingSet(getSnapshot(false));
 	}
 	
 	@Override public ValidationSet getValidationSet() {
-		return new ValidationSet(inputSet, outputSet);
+		return new ValidationSet(getSnapshot(true));
 	}
 	
 	@Override public TestSet getTestSet() {
-		return new TestSet(inputSet, outputSet);
+		return new TestSet(getSnapshot(true));
 	}
 	
 	@Override public int getInputSize() {
-		return inputSet.getSetSize();
+		return inputSize;
 	}
-
+	
 	@Override public int getOutputSize() {
-		return outputSet.getSetSize();
+		return outputSize;
 	}
 	
 	public int getSetCount() {
 		return setCount;
 	}
 	
+	public boolean isSparse() {
+		return sparse;
+	}
+	
+	/**
+	 * Returns the amount of sets added so far, including those that were overwritten since.
+	 */
+	public long getAddedCount() {
+		return sequence.get();
+	}
+	
 	public void add(double[] input, double[] output) {
-		Requirements.equal(input.length, getInputSize(), "input length");
-		Requirements.equal(output.length, getOutputSize(), "output length");
+		int[] active = checkInput(input);
+		checkOutput(output);
 		
-		VectorizedData.getINDArray(inputSet).putRow(counter, Nd4j.create(input));
-		VectorizedData.getINDArray(outputSet).putRow(counter, Nd4j.create(output));
-		counter = ++counter % getSetCount();
+		write(sequence.getAndIncrement(), input, active, output, ALL_OUTPUTS);
 	}
-
+	
 	public void add(double[] input, int position, double output) {
-		Requirements.equal(input.length, getInputSize(), "input length");
+		int[] active = checkInput(input);
 		Requirements.nonNegative(position, "output position");
 		Requirements.smallerThan(position, getOutputSize(), "output position");
 		
-		VectorizedData.getINDArray(inputSet).putRow(counter, Nd4j.create(input));
 		double[] doutput = new double[getOutputSize()];
 		doutput[position] = output;
-		VectorizedData.getINDArray(outputSet).putRow(counter, Nd4j.create(doutput));
-		doutput[position] = 1;
-		VectorizedData.getINDArray(outputSet.getMixer()).putRow(counter, Nd4j.create(doutput));
-		counter = ++counter % getSetCount();
+		write(sequence.getAndIncrement(), input, active, doutput, position);
+	}
+	
+	/**
+	 * Adds several sets at once, claiming their slots with a single update of the sequence counter.
+	 */
+	public void addAll(double[][] inputs, double[][] outputs) {
+		Requirements.nonNull(inputs, "inputs");
+		Requirements.nonNull(outputs, "outputs");
+		Requirements.equal(outputs.length, inputs.length, "output count");
+		int[][] active = new int[inputs.length][];
+		for (int i = 0; i < inputs.length; i++) {
+			active[i] = checkInput(inputs[i]);
+			checkOutput(outputs[i]);
+		}
+		
+		long first = sequence.getAndAdd(inputs.length);
+		for (int i = 0; i < inputs.length; i++) {
+			write(first + i, inputs[i], active[i], outputs[i], ALL_OUTPUTS);
+		}
+	}
+	
+	/**
+	 * Returns a consistent copy of every slot of the buffer that is never overwritten by later snapshots.
+	 */
+	public SupervisedInOutSet getSnapshot() {
+		return getSnapshot(true);
+	}
+	
+	private SupervisedInOutSet getSnapshot(boolean retain) {
+		Snapshot last = snapshot;
+		if (!retain && last != null && last.sequence == sequence.get()) return last.set;
+		
+		synchronized (this) {
+			last = snapshot;
+			if (last == null || last.sequence != sequence.get()) {
+				long stable = completed.get();
+				Snapshot result = spare != null && !spare.retained ? readSlots(stable, spare) : readSlots(stable, null);
+				spare = last;
+				snapshot = last = result;
+			}
+			if (retain) last.retained = true;
+			return last.set;
+		}
+	}
+	
+	
+	/**
+	 * Reads the slots that changed since the given snapshot into its matrices, or every slot into new ones if it is null.
+	 */
+	private Snapshot readSlots(long stable, Snapshot target) {
+		long[] copied;
+		INDArray inArr, outArr;
+		int[] active;
+		int[][] activeIn;
+		if (target == null) {
+			copied = new long[setCount];
+			Arrays.fill(copied, -1);
+			inArr = Nd4j.create(new int[] {setCount, inputSize}, 'c');
+			outArr = Nd4j.create(new int[] {setCount, outputSize}, 'c');
+			active = new int[setCount];
+			activeIn = sparse ? new int[setCount][] : null;
+		} else {
+			copied = target.stamps;
+			inArr = target.inputs;
+			outArr = target.outputs;
+			active = target.activeOutputs;
+			activeIn = target.activeInputs;
+		}
+		
+		DataBuffer in = inArr.data();
+		DataBuffer out = outArr.data();
+		for (int slot = 0; slot < setCount; slot++) {
+			if (stamps.get(slot) != copied[slot]) copied[slot] = readSlot(slot, in, out, active, activeIn);
+		}
+		return new Snapshot(stable, copied, inArr, outArr, active, activeIn);
+	}
+	
+	/**
+	 * Reads a slot into the given buffers, retrying until no write overlapped the read, and returns the slot's stamp.
+	 */
+	private long readSlot(int slot, DataBuffer in, DataBuffer out, int[] active, int[][] activeIn) {
+		while (true) {
+			long stamp = stamps.get(slot);
+			if ((stamp & 1) == 0) {
+				read(inputs, slot * inputSize, in, inputSize);
+				read(outputs, slot * outputSize, out, outputSize);
+				active[slot] = activeOutputs.get(slot);
+				if (sparse) activeIn[slot] = activeInputs.get(slot);
+				if (stamps.get(slot) == stamp) return stamp;
+			}
+			Thread.yield();
+		}
+	}
+	
+	
+	private void write(long index, double[] input, int[] activeInput, double[] output, int activeOutput) {
+		int slot = (int) (index % setCount);
+		long written = 2 * (index + 1);
+		while (true) {
+			long stamp = stamps.get(slot);
+			if (stamp >= written) {			// A later set already took this slot
+				completed.incrementAndGet();
+				return;
+			}
+			if ((stamp & 1) == 0 && stamps.compareAndSet(slot, stamp, written - 1)) break;
+			Thread.yield();
+		}
+		
+		for (int i = 0; i < inputSize; i++) {
+			inputs.lazySet(slot * inputSize + i, Double.doubleToRawLongBits(input[i]));
+		}
+		for (int i = 0; i < outputSize; i++) {
+			outputs.lazySet(slot * outputSize + i, Double.doubleToRawLongBits(output[i]));
+		}
+		activeOutputs.lazySet(slot, activeOutput);
+		if (sparse) activeInputs.lazySet(slot, activeInput);
+		stamps.set(slot, written);
+		completed.incrementAndGet();
+	}
+	
+	private static int[] findActiveInputs(double[] input) {
+		int[] buffer = new int[input.length];
+		int count = 0;
+		for (int i = 0; i < input.length; i++) {
+			if (input[i] == 1) buffer[count++] = i;
+			else Requirements.throwErrorIf(input[i] != 0, Requirements.FormatStrings.mustBe, "sparse input value", "0 or 1");
+		}
+		return Arrays.copyOf(buffer, count);
+	}
+	
+	private static void read(AtomicLongArray source, int offset, DataBuffer target, int length) {
+		for (int i = 0; i < length; i++) {
+			target.put(offset + i, Double.longBitsToDouble(source.get(offset + i)));
+		}
+	}
+	
+	private static void fillRandom(AtomicLongArray array) {
+		double[] values = Nd4j.randn(1, array.length()).data().asDouble();
+		for (int i = 0; i < values.length; i++) {
+			array.set(i, Double.doubleToRawLongBits(values[i]));
+		}
+	}
+	
+	/**
+	 * Returns the active indices of a sparse input, or null if this set is not sparse.
+	 */
+	private int[] checkInput(double[] input) {
+		Requirements.equal(Requirements.nonNull(input, "input").length, getInputSize(), "input length");
+		return sparse ? findActiveInputs(input) : null;
+	}
+	
+	private void checkOutput(double[] output) {
+		Requirements.equal(Requirements.nonNull(output, "output").length, getOutputSize(), "output length");
+	}
+	
+	
+	
+	private class Snapshot {
+		
+		private final long sequence;
+		private final long[] stamps;
+		private final INDArray inputs;
+		private final INDArray outputs;
+		private final int[] activeOutputs;
+		private final int[][] activeInputs;
+		private final SupervisedInOutSet set;
+		private boolean retained;
+		
+		/**
+		 * @param stable the sequence number up to which every write had completed before the slots were read; the snapshot is only reused for that sequence number if no set was claimed in the meantime
+		 */
+		public Snapshot(long stable, long[] stamps, INDArray inputs, INDArray outputs, int[] activeOutputs, int[][] activeInputs) {
+			this.sequence = OnlineDataSet.this.sequence.get() == stable ? stable : -1;
+			this.stamps = stamps;
+			this.inputs = inputs;
+			this.outputs = outputs;
+			this.activeOutputs = activeOutputs;
+			this.activeInputs = activeInputs;
+			
+			InputSet inputSet = sparse ? SparseInputSet.view(inputs, activeInputs) : InputSet.view(inputs);
+			OutputSet outputSet = OutputSet.view(outputs);
+			for (int slot = 0; slot < setCount; slot++) {
+				if (activeOutputs[slot] != ALL_OUTPUTS) outputSet.getMask().setOnly(slot, activeOutputs[slot]);
+			}
+			this.set = new SupervisedInOutSet(inputSet, outputSet);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package com.n2d4.rachel.vectorization;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * Marks which outputs of an {@link OutputSet} count towards its cost, as one bitset per set. Inactive outputs are treated as if they were predicted perfectly.
+ */
+public class OutputMask implements Debuggable, Serializable {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	private final int setCount;
+	private final int outputCount;
+	private final int wordsPerSet;
+	private final long[] bits;
+	
+	/**
+	 * Creates a mask in which every output is active.
+	 */
+	public OutputMask(int setCount, int outputCount) {
+		this.setCount = Requirements.nonNegative(setCount, "set count");
+		this.outputCount = Requirements.nonNegative(outputCount, "output count");
+		this.wordsPerSet = (outputCount + 63) >>> 6;
+		this.bits = new long[setCount * wordsPerSet];
+		for (int i = 0; i < setCount; i++) {
+			setAll(i);
+		}
+	}
+	
+	
+	public int getSetCount() {
+		return setCount;
+	}
+	
+	public int getOutputCount() {
+		return outputCount;
+	}
+	
+	public boolean isActive(int set, int output) {
+		return (bits[set * wordsPerSet + (output >>> 6)] & (1L << output)) != 0;
+	}
+	
+	public void setActive(int set, int output, boolean active) {
+		checkIndices(set, output);
+		int word = set * wordsPerSet + (output >>> 6);
+		if (active) bits[word] |= 1L << output;
+		else bits[word] &= ~(1L << output);
+	}
+	
+	/**
+	 * Makes the given output the only active output of the given set.
+	 */
+	public void setOnly(int set, int output) {
+		checkIndices(set, output);
+		Arrays.fill(bits, set * wordsPerSet, (set + 1) * wordsPerSet, 0);
+		setActive(set, output, true);
+	}
+	
+	public void setAll(int set) {
+		Requirements.nonNegative(set, "set");
+		Requirements.smallerThan(set, setCount, "set");
+		
+		int start = set * wordsPerSet;
+		Arrays.fill(bits, start, start + wordsPerSet, -1L);
+		if ((outputCount & 63) != 0) bits[start + wordsPerSet - 1] = (1L << outputCount) - 1;
+	}
+	
+	public int getActiveCount() {
+		int result = 0;
+		for (long word : bits) {
+			result += Long.bitCount(word);
+		}
+		return result;
+	}
+	
+	public int getActiveCount(int set) {
+		int result = 0;
+		for (int i = set * wordsPerSet; i < (set + 1) * wordsPerSet; i++) {
+			result += Long.bitCount(bits[i]);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Returns a copy of the mask of the sets from {@code from} (inclusive) to {@code to} (exclusive).
+	 */
+	public OutputMask getRange(int from, int to) {
+		Requirements.nonNegative(from, "range start");
+		Requirements.smallerOrEqual(to, setCount, "range end");
+		Requirements.smallerOrEqual(from, to, "range start");
+		
+		OutputMask result = new OutputMask(to - from, outputCount);
+		System.arraycopy(bits, from * wordsPerSet, result.bits, 0, (to - from) * wordsPerSet);
+		return result;
+	}
+	
+	
+	/**
+	 * Returns a copy of the mask of the sets with the given indices, in the given order.
+	 */
+	public OutputMask getRows(int[] rows) {
+		OutputMask result = new OutputMask(rows.length, outputCount);
+		for (int i = 0; i < rows.length; i++) {
+			Requirements.nonNegative(rows[i], "row");
+			Requirements.smallerThan(rows[i], setCount, "row");
+			System.arraycopy(bits, rows[i] * wordsPerSet, result.bits, i * wordsPerSet, wordsPerSet);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the only active output of every set, or null if some set does not have exactly one active output.
+	 */
+	public int[] getSingleActiveOutputs() {
+		int[] result = new int[setCount];
+		for (int i = 0; i < setCount; i++) {
+			if (getActiveCount(i) != 1) return null;
+			for (int w = 0; w < wordsPerSet; w++) {
+				long word = bits[i * wordsPerSet + w];
+				if (word != 0) result[i] = (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Sets every inactive element of the given matrix to zero, in place.
+	 */
+	public INDArray applyTo(INDArray arr) {
+		Requirements.equal(arr.rows(), setCount, "row count");
+		Requirements.equal(arr.columns(), outputCount, "column count");
+		
+		for (int i = 0; i < setCount; i++) {
+			if (getActiveCount(i) == outputCount) continue;
+			for (int j = 0; j < outputCount; j++) {
+				if (!isActive(i, j)) arr.putScalar(i, j, 0);
+			}
+		}
+		return arr;
+	}
+	
+	/**
+	 * Returns the mask as a dense matrix of ones and zeros.
+	 */
+	public INDArray toINDArray() {
+		return applyTo(Nd4j.ones(setCount, outputCount));
+	}
+	
+	
+	private void checkIndices(int set, int output) {
+		Requirements.nonNegative(set, "set");
+		Requirements.smallerThan(set, setCount, "set");
+		Requirements.nonNegative(output, "output");
+		Requirements.smallerThan(output, outputCount, "output");
+	}
+	
+	
+	@Override
+	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = new DebugStringBuilder(this);
+		builder.add("getSetCount()", getSetCount()).add("getOutputCount()", getOutputCount())
+				.addDetailed("toINDArray()", this::getActiveCount, this::toINDArray);
+		return builder;
+	}
+
+}
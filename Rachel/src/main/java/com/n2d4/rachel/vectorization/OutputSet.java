@@ -2,6 +2,7 @@ package com.n2d4.rachel.vectorization;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import com.n2d4.rachel.vectorization.derivatives.OutputDerivative;
 
@@ -11,26 +12,67 @@ public class OutputSet extends SupervisedSet implements OutputValueSet {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
-	private final OutputMixer mixer = new OutputMixer();
+	private volatile OutputMask mask;
+	private final INDArray logValues;
 
 	public OutputSet(double[]... sets) {
 		super(sets);
+		this.logValues = null;
 	}
 
 	public OutputSet(double... set) {
 		super(set);
+		this.logValues = null;
 	}
 
 	public OutputSet(LayerOutputSet processLayer) {
 		super(VectorizedData.getINDArray(processLayer));
+		this.logValues = processLayer.getLogValues();
 	}
 
 	public OutputSet(INDArray data) {
 		super(data);
+		this.logValues = null;
 	}
 	
-	public OutputMixer getMixer() {
-		return mixer;
+	protected OutputSet(INDArray data, boolean copy) {
+		super(data, copy);
+		this.logValues = null;
+	}
+	
+	/**
+	 * Wraps the given array without copying it. Changes to the array show in the returned set.
+	 */
+	public static OutputSet view(INDArray data) {
+		return new OutputSet(data, false);
+	}
+	
+	/**
+	 * Returns this set's mask, creating one in which every output is active if it does not exist yet.
+	 */
+	public OutputMask getMask() {
+		OutputMask result = mask;
+		if (result == null) {
+			synchronized (this) {
+				result = mask;
+				if (result == null) mask = result = new OutputMask(getSetCount(), getOutputCount());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns whether a mask was created for this set. Without one, every output is active.
+	 */
+	public boolean hasMask() {
+		return mask != null;
+	}
+	
+	/**
+	 * Returns the natural logarithms of the outputs if the layer that produced them {@link LayerOutputSet#getLogValues() computed them}, or null otherwise.
+	 */
+	public INDArray getLogValues() {
+		return logValues;
 	}
 
 	@Override
@@ -38,9 +80,28 @@ public class OutputSet extends SupervisedSet implements OutputValueSet {
 		return getSetSize();
 	}
 	
+	/**
+	 * Returns a copy of the sets from {@code from} (inclusive) to {@code to} (exclusive), including their mask.
+	 */
+	public OutputSet getRange(int from, int to) {
+		OutputSet result = new OutputSet(getValues().get(NDArrayIndex.interval(from, to), NDArrayIndex.all()));
+		if (hasMask()) result.mask = getMask().getRange(from, to);
+		return result;
+	}
+	
+	/**
+	 * Returns the sets with the given indices, in the given order, including their mask. The values are gathered in a single operation.
+	 */
+	public OutputSet getRows(int[] rows) {
+		OutputSet result = new OutputSet(Nd4j.pullRows(getValues(), 1, rows), false);
+		if (hasMask()) result.mask = getMask().getRows(rows);
+		return result;
+	}
+	
 	public DataDelta<OutputSet> getDifference(OutputSet actualOutput) {
 		DataDelta<OutputSet> result = new DataDelta<OutputSet>(actualOutput, this);
-		VectorizedData.getINDArray(result).muli(VectorizedData.getINDArray(getMixer())).muli(VectorizedData.getINDArray(actualOutput.getMixer()));
+		if (hasMask()) getMask().applyTo(VectorizedData.getINDArray(result));
+		if (actualOutput.hasMask()) actualOutput.getMask().applyTo(VectorizedData.getINDArray(result));
 		return result;
 	}
 	
@@ -55,20 +116,5 @@ public class OutputSet extends SupervisedSet implements OutputValueSet {
 	public boolean hasIgnorableDerivative() {
 		return true;
 	}
-	
-	
-	
-	public class OutputMixer extends VectorizedData {			// TODO Rework mixers (important!)
-		private static final long serialVersionUID = 1L;
-		
-		public OutputMixer() {
-			super(Nd4j.ones(OutputSet.this.getValues().shape()));
-		}
-		
-		public OutputSet mix(OutputSet actualOutput) {
-			INDArray values = getValues();
-			return new OutputSet(values.mul(OutputSet.this.getValues()).add(actualOutput.getValues().mul(values.rsub(1))));
-		}
-	}
 
 }
@@ -0,0 +1,133 @@
+package com.n2d4.rachel.vectorization;
+
+import java.util.Arrays;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.DebugStringBuilder;
+import com.n2d4.rachel.util.Requirements;
+
+/**
+ * An {@link InputSet} of binary features, such as one-hot encodings, that additionally stores the indices of the active (non-zero) features of every set.
+ * <p>
+ * The dense values are still available, but {@link com.n2d4.rachel.learning.WeightApplyFunction#SPARSE_MATRIX_MULT} can use the active indices to skip every inactive feature.
+ */
+public class SparseInputSet extends InputSet {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	private final int[][] activeIndices;
+
+	/**
+	 * @param inputSize the amount of features per set
+	 * @param activeIndices the indices of the features that are set to 1 in every set; all other features are 0
+	 */
+	public SparseInputSet(int inputSize, int[]... activeIndices) {
+		super(toDense(inputSize, activeIndices));
+		this.activeIndices = new int[activeIndices.length][];
+		for (int i = 0; i < activeIndices.length; i++) {
+			this.activeIndices[i] = activeIndices[i].clone();
+		}
+	}
+
+	/**
+	 * Creates a sparse copy of a dense input set. Every value of the given set must be either 0 or 1.
+	 */
+	public SparseInputSet(InputSet dense) {
+		this(dense, true);
+	}
+	
+	private SparseInputSet(InputSet dense, boolean copy) {
+		super(VectorizedData.getINDArray(Requirements.nonNull(dense, "dense input set")), copy);
+		this.activeIndices = findActiveIndices(getValues());
+	}
+	
+	private SparseInputSet(INDArray values, int[][] activeIndices) {
+		super(values, false);
+		this.activeIndices = activeIndices;
+	}
+	
+	/**
+	 * Wraps a dense input set without copying its values. The active indices are found once, so the dense values must not change while the view is in use.
+	 */
+	public static SparseInputSet view(InputSet dense) {
+		return new SparseInputSet(dense, false);
+	}
+	
+	/**
+	 * Wraps dense values whose active indices are already known, without copying or scanning either. The caller guarantees that they match and that neither changes while the view is in use.
+	 */
+	static SparseInputSet view(INDArray values, int[][] activeIndices) {
+		return new SparseInputSet(values, activeIndices);
+	}
+	
+	/**
+	 * Returns the sets with the given indices, in the given order. Their active indices are taken over rather than found again.
+	 */
+	public SparseInputSet getRows(int[] rows) {
+		int[][] active = new int[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			active[i] = activeIndices[rows[i]];
+		}
+		return new SparseInputSet(Nd4j.pullRows(getValues(), 1, rows), active);
+	}
+	
+	
+	public int getActiveCount(int set) {
+		return activeIndices[set].length;
+	}
+	
+	public int getActiveIndex(int set, int i) {
+		return activeIndices[set][i];
+	}
+	
+	public int[] getActiveIndices(int set) {
+		return activeIndices[set].clone();
+	}
+	
+	
+	private static double[][] toDense(int inputSize, int[][] activeIndices) {
+		Requirements.positive(inputSize, "input size");
+		Requirements.nonEmpty(Requirements.nonNull(activeIndices, "active indices"), "active indices");
+		
+		double[][] result = new double[activeIndices.length][inputSize];
+		for (int i = 0; i < activeIndices.length; i++) {
+			for (int index : Requirements.nonNull(activeIndices[i], "active indices")) {
+				Requirements.nonNegative(index, "active index");
+				Requirements.smallerThan(index, inputSize, "active index");
+				result[i][index] = 1;
+			}
+		}
+		return result;
+	}
+	
+	private static int[][] findActiveIndices(INDArray values) {
+		int rows = values.rows();
+		int columns = values.columns();
+		double[] data = Nd4j.toFlattened('c', values).data().asDouble();
+		int[][] result = new int[rows][];
+		int[] buffer = new int[columns];
+		for (int i = 0; i < rows; i++) {
+			int count = 0;
+			for (int j = 0; j < columns; j++) {
+				double value = data[i * columns + j];
+				if (value == 1) buffer[count++] = j;
+				else Requirements.throwErrorIf(value != 0, Requirements.FormatStrings.mustBe, "sparse input value", "0 or 1");
+			}
+			result[i] = Arrays.copyOf(buffer, count);
+		}
+		return result;
+	}
+	
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
+		DebugStringBuilder builder = super.buildDebugBuilder();
+		builder.addLazy("getActiveIndices()", () -> activeIndices);
+		return builder;
+	}
+
+}
@@ -53,19 +53,36 @@ public class StaticDataSet implements DataSet, Debuggable, Serializable {
 	public StaticDataSet(InputSet inputSet, OutputSet outputSet) {
 		this(inputSet, outputSet, 0.2d, 0.2d);
 	}
+	
+	/**
+	 * Returns the data set of one out of shardCount shards, made of a contiguous range of the given sets. The range is taken before shuffling, so processes that build the same sets get disjoint shards; each shard is then split like a data set of its own.
+	 */
+	public static StaticDataSet shard(InputSet inputSet, OutputSet outputSet, int shard, int shardCount, double crossValidationSize, double testSize) {
+		Requirements.equal(inputSet.getSetCount(), outputSet.getSetCount(), "input set size");
+		Requirements.positive(shardCount, "shard count");
+		Requirements.nonNegative(shard, "shard");
+		Requirements.smallerThan(shard, shardCount, "shard");
+		
+		int setCount = inputSet.getSetCount();
+		INDArrayIndex ind = NDArrayIndex.interval((int) ((long) setCount * shard / shardCount), (int) ((long) setCount * (shard + 1) / shardCount));
+		INDArrayIndex all = NDArrayIndex.all();
+		InputSet shardIn = InputSet.view(VectorizedData.getINDArray(inputSet).get(ind, all));
+		OutputSet shardOut = OutputSet.view(VectorizedData.getINDArray(outputSet).get(ind, all));
+		return new StaticDataSet(shardIn, shardOut, crossValidationSize, testSize);
+	}
 
 	
 	private static final InOutSet<InputSet, OutputSet> stprt(INDArray iarr, INDArray oarr, int from, int to) {
 		INDArrayIndex ind = NDArrayIndex.interval(from, to);
 		INDArrayIndex all = NDArrayIndex.all();
-		final InputSet newIn = new InputSet(iarr.get(ind, all));
-		final OutputSet newOut = new OutputSet(oarr.get(ind, all));
+		final InputSet newIn = InputSet.view(iarr.get(ind, all));
+		final OutputSet newOut = OutputSet.view(oarr.get(ind, all));
 		
 		return new AbstractLayerOutputSet<InputSet, OutputSet>(newIn, newOut);
 	}
 	
 	private static final InOutSet<InputSet, OutputSet> aliasSet(InOutSet<InputSet, OutputSet> orig) {
-		return new AbstractLayerOutputSet<InputSet, OutputSet>(new InputSet(VectorizedData.getINDArray(orig.getInputSet())), new OutputSet(VectorizedData.getINDArray(orig.getOutputSet())));
+		return new AbstractLayerOutputSet<InputSet, OutputSet>(InputSet.view(VectorizedData.getINDArray(orig.getInputSet())), OutputSet.view(VectorizedData.getINDArray(orig.getOutputSet())));
 	}
 	
 	
@@ -106,10 +123,15 @@ public class StaticDataSet implements DataSet, Debuggable, Serializable {
 	
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getTrainingSet()", getTrainingSet()).add("getValidationSet()", getValidationSet())
 				.add("getTestSet()", getTestSet());
-		return builder.toString();
+		return builder;
 	}
 	
 }
@@ -2,13 +2,14 @@ package com.n2d4.rachel.vectorization;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Random;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import com.n2d4.rachel.util.DebugStringBuilder;
 import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.Util;
 import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
 
 public class SupervisedInOutSet implements Debuggable, InOutSet<InputSet, OutputSet>, Serializable {
@@ -52,7 +53,31 @@ public class SupervisedInOutSet implements Debuggable, InOutSet<InputSet, Output
 		return outputSet.getOutputCount();
 	}
 	
-	public SupervisedInOutSet getRandomizedBatch(int size) {		// TODO Optimize
+	/**
+	 * Returns a copy of the sets from {@code from} (inclusive) to {@code to} (exclusive). Sparse inputs and output masks are kept.
+	 */
+	public SupervisedInOutSet getRange(int from, int to) {
+		Requirements.nonNegative(from, "range start");
+		Requirements.smallerOrEqual(to, getSize(), "range end");
+		Requirements.smallerThan(from, to, "range start");
+		
+		InputSet rangeInput;
+		if (inputSet instanceof SparseInputSet) {
+			int[] rows = new int[to - from];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = from + i;
+			}
+			rangeInput = ((SparseInputSet) inputSet).getRows(rows);
+		} else {
+			rangeInput = new InputSet(VectorizedData.getINDArray(inputSet).get(NDArrayIndex.interval(from, to), NDArrayIndex.all()));
+		}
+		return new SupervisedInOutSet(rangeInput, outputSet.getRange(from, to));
+	}
+	
+	/**
+	 * Returns {@code size} distinct sets picked at random. Only the picked rows are copied, with one gather per matrix; the active indices of sparse inputs and the output mask are carried over.
+	 */
+	public SupervisedInOutSet getRandomizedBatch(int size) {
 		Requirements.largerOrEqual(size, 0, "size");
 		Requirements.smallerOrEqual(size, getSize(), "size");
 		
@@ -60,21 +85,40 @@ public class SupervisedInOutSet implements Debuggable, InOutSet<InputSet, Output
 			return this;
 		}
 		
-		INDArray inarr = VectorizedData.getINDArray(inputSet).dup();
-		INDArray outarr = VectorizedData.getINDArray(outputSet).dup();
-		Nd4j.shuffle(Arrays.asList(inarr, outarr), 1);
-		inarr = inarr.get(NDArrayIndex.interval(0, size), NDArrayIndex.interval(0, inarr.columns()));
-		outarr = outarr.get(NDArrayIndex.interval(0, size), NDArrayIndex.interval(0, outarr.columns()));
-		
-		return new SupervisedInOutSet(new InputSet(inarr), new OutputSet(outarr));
+		int[] rows = pickRows(size);
+		InputSet batchInput;
+		if (inputSet instanceof SparseInputSet) batchInput = ((SparseInputSet) inputSet).getRows(rows);
+		else batchInput = InputSet.view(Nd4j.pullRows(VectorizedData.getINDArray(inputSet), 1, rows));
+		return new SupervisedInOutSet(batchInput, outputSet.getRows(rows));
+	}
+	
+	
+	private int[] pickRows(int count) {
+		Random random = Util.getRandom();
+		int[] indices = new int[getSize()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		for (int i = 0; i < count; i++) {
+			int j = i + random.nextInt(indices.length - i);
+			int swap = indices[i];
+			indices[i] = indices[j];
+			indices[j] = swap;
+		}
+		return Arrays.copyOf(indices, count);
 	}
 
 
 	@Override
 	public String toString() {
+		return buildDebugBuilder().toString();
+	}
+	
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
 		builder.add("getInputSet()", getInputSet()).add("getOutputSet()", getOutputSet());
-		return builder.toString();
+		return builder;
 	}
 
 }
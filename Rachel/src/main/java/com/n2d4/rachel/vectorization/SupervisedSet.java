@@ -13,6 +13,10 @@ public abstract class SupervisedSet extends ValueSet {
 		super(data);
 	}
 	
+	protected SupervisedSet(INDArray data, boolean copy) {
+		super(data, copy);
+	}
+	
 	public SupervisedSet(double[]... data) {
 		super(data);
 	}
@@ -1,5 +1,9 @@
 package com.n2d4.rachel.vectorization;
 
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
 import com.n2d4.rachel.util.Requirements;
 import com.n2d4.rachel.vectorization.derivatives.UnrolledParameterErrors;
 
@@ -9,10 +13,27 @@ public class UnrolledParameters extends UnrolledData {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
-
-
+	private final int[] decayableRanges;
+	
+	
 	public UnrolledParameters(VectorizedData... from) {
 		super(from);
+		this.decayableRanges = getDecayableRanges(from);
+	}
+	
+	/**
+	 * Returns the start (inclusive) and end (exclusive) of the unrolled elements of every source that are subject to weight decay, one pair per source. The bias row of a {@link LayerWeights} is stored first in row-major order, so its weights without the bias are a single range.
+	 */
+	private static int[] getDecayableRanges(VectorizedData... from) {
+		int[] result = new int[from.length * 2];
+		int pos = 0;
+		for (int i = 0; i < from.length; i++) {
+			int npos = pos + VectorizedData.getINDArray(from[i]).length();
+			result[2 * i] = from[i] instanceof LayerWeights ? pos + from[i].getColumnCount() : pos;
+			result[2 * i + 1] = npos;
+			pos = npos;
+		}
+		return result;
 	}
 	
 	
@@ -22,4 +43,37 @@ public class UnrolledParameters extends UnrolledData {
 		getValues().subi(VectorizedData.getINDArray(derivative).mul(learningRate));
 	}
 	
+	/**
+	 * Same as {@link #updateFrom(UnrolledParameterErrors, double)}, but adds the derivative of an L2 and an L1 weight penalty to every weight that is not a bias. The penalty of every layer's weights without its bias row is computed with native operations on a view of those weights.
+	 * 
+	 * @param l2 the factor of the penalty {@code l2/2 * w^2}
+	 * @param l1 the factor of the penalty {@code l1 * |w|}
+	 */
+	public void updateFrom(UnrolledParameterErrors derivative, double learningRate, double l2, double l1) {
+		Requirements.equal(derivative.getDataLength(), getDataLength(), "derivative data length");
+		Requirements.throwErrorIf(!(l2 >= 0), Requirements.FormatStrings.mustNotBe, "L2 factor", "negative");
+		Requirements.throwErrorIf(!(l1 >= 0), Requirements.FormatStrings.mustNotBe, "L1 factor", "negative");
+		
+		if (l2 == 0 && l1 == 0) {
+			updateFrom(derivative, learningRate);
+			return;
+		}
+		
+		// The penalties are computed from the weights before the update, on a view of every range
+		INDArray values = getValues();
+		INDArray[] penalties = new INDArray[decayableRanges.length / 2];
+		for (int i = 0; i < penalties.length; i++) {
+			if (decayableRanges[2 * i] == decayableRanges[2 * i + 1]) continue;
+			INDArray weights = values.get(NDArrayIndex.interval(decayableRanges[2 * i], decayableRanges[2 * i + 1]));
+			penalties[i] = weights.mul(l2);
+			if (l1 != 0) penalties[i].addi(Transforms.sign(weights).muli(l1));
+		}
+		
+		updateFrom(derivative, learningRate);
+		for (int i = 0; i < penalties.length; i++) {
+			if (penalties[i] == null) continue;
+			values.get(NDArrayIndex.interval(decayableRanges[2 * i], decayableRanges[2 * i + 1])).subi(penalties[i].muli(learningRate));
+		}
+	}
+
 }
@@ -12,7 +12,14 @@ public abstract class ValueSet extends VectorizedData {
 	private static final long serialVersionUID = 1L;
 
 	protected ValueSet(INDArray data) {
-		super(data.dup());
+		this(data, true);
+	}
+	
+	/**
+	 * @param copy whether to copy the given array; if false, the set is a view that shares its storage, so later changes to either one show in both
+	 */
+	protected ValueSet(INDArray data, boolean copy) {
+		super(copy ? Requirements.nonNull(data, "data").dup() : data);
 	}
 	
 	protected ValueSet(double[]... data) {
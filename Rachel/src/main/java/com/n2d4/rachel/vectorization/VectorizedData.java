@@ -10,6 +10,7 @@ import org.nd4j.linalg.factory.Nd4j;
 import com.n2d4.rachel.util.DebugStringBuilder;
 import com.n2d4.rachel.util.DebugStringBuilder.Debuggable;
 import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.util.math.Nd4jUtils;
 
 public abstract class VectorizedData implements Debuggable, Serializable {
 	private static final long serialVersionUID = 1L;
@@ -67,10 +68,11 @@ public abstract class VectorizedData implements Debuggable, Serializable {
 		return buildDebugBuilder().toString();
 	}
 	
-	protected DebugStringBuilder buildDebugBuilder() {
+	@Override
+	public DebugStringBuilder buildDebugBuilder() {
 		DebugStringBuilder builder = new DebugStringBuilder(this);
-		builder.add("getRowCount()", getRowCount()).add("getColumnCount()", getColumnCount()).add("getValues()",
-				getValues());
+		builder.add("getRowCount()", getRowCount()).add("getColumnCount()", getColumnCount())
+				.addDetailed("getValues()", () -> Nd4jUtils.summarize(getValues()), this::getValues);
 		return builder;
 	}
 
@@ -24,7 +24,7 @@ public class Erroneousness extends Derivative<CostSet, UnactivatedLayerOutputSet
 	
 	public ParameterError<LayerWeights> chain(ParameterApplyDerivative<LayerWeights> with) {
 		Requirements.nonNull(with, "derivative to chain with");
-		return new ParameterError<LayerWeights>(VectorizedData.getINDArray(with).transpose().mmul(getValues()));
+		return new ParameterError<LayerWeights>(with.transposeMmul(getValues()));
 	}
 	
 	public LayerInputError chainInput(ParameterApplyDerivative<LayerInputSet> with) {
@@ -15,5 +15,12 @@ public class ParameterApplyDerivative<T extends VectorizedData> extends Derivati
 	public ParameterApplyDerivative(INDArray values) {
 		super(values);
 	}
+	
+	/**
+	 * Returns the product of this derivative's transpose and the given matrix.
+	 */
+	public INDArray transposeMmul(INDArray other) {
+		return getValues().transpose().mmul(other);
+	}
 
 }
@@ -0,0 +1,49 @@
+package com.n2d4.rachel.vectorization.derivatives;
+
+import java.util.Arrays;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.n2d4.rachel.util.Requirements;
+import com.n2d4.rachel.vectorization.LayerInputSet;
+import com.n2d4.rachel.vectorization.LayerWeights;
+
+/**
+ * The derivative of a layer's output with respect to its weights for a {@link LayerInputSet#isSparse() sparse} input. Its values are the input's {@link LayerInputSet#getActiveColumnSelection() active column selection}; when chained, the errors are summed per active column with a single multiplication and scattered into the weight rows of those columns.
+ */
+public class SparseParameterApplyDerivative extends ParameterApplyDerivative<LayerWeights> {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	private final int[] activeColumns;
+	private final int inputColumns;
+
+	public SparseParameterApplyDerivative(LayerInputSet input) {
+		super(checkSparse(input).getActiveColumnSelection());
+		this.activeColumns = input.getActiveColumns();
+		this.inputColumns = input.getSetSize();
+	}
+	
+	@Override
+	public INDArray transposeMmul(INDArray other) {
+		Requirements.equal(other.rows(), getRowCount(), "error row count");
+		
+		INDArray activeRows = getValues().transpose().mmul(other);
+		int[] rows = new int[inputColumns];
+		Arrays.fill(rows, activeColumns.length);			// The appended row of zeros
+		for (int i = 0; i < activeColumns.length; i++) {
+			rows[activeColumns[i]] = i;
+		}
+		return Nd4j.pullRows(Nd4j.vstack(activeRows, Nd4j.zeros(1, other.columns())), 1, rows);
+	}
+	
+	
+	private static LayerInputSet checkSparse(LayerInputSet input) {
+		Requirements.throwErrorIf(!Requirements.nonNull(input, "input").isSparse(), Requirements.FormatStrings.mustBe, "input", "sparse");
+		return input;
+	}
+
+}